@@ -0,0 +1,64 @@
+package com.itranswarp.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Analysis settings of built-in analyzers, added to index settings by
+ * SearchableClient.createIndex().
+ */
+class Analyzers {
+
+	/**
+	 * Analyzer of the unigram subfield of CJK_BIGRAM fields, which indexes CJK
+	 * text as single characters so that a single-character word matches.
+	 */
+	static final String CJK_UNIGRAM = "cjk_unigram";
+
+	static final String EDGE_NGRAM_SEARCH = "edge_ngram_search";
+	static final String EDGE_NGRAM_FILTER = "edge_ngram_filter";
+
+	static final int EDGE_NGRAM_MIN = 1;
+	static final int EDGE_NGRAM_MAX = 20;
+
+	/**
+	 * Create analysis settings with built-in analyzers, merged with extra
+	 * settings.
+	 * 
+	 * @param extra
+	 *            Extra settings keyed by section ("analyzer", "tokenizer",
+	 *            "filter" or "char_filter") and then by name. Can be empty.
+	 * @return Analysis settings.
+	 */
+	static Map<String, Object> createAnalysis(Map<String, Map<String, Object>> extra) {
+		Map<String, Map<String, Object>> analysis = new HashMap<>();
+		Map<String, Object> analyzers = new HashMap<>();
+		// standard tokenizer splits CJK text into characters, which are
+		// joined to bigrams by cjk_bigram filter:
+		analyzers.put(SearchableField.CJK_BIGRAM, analyzer("standard", "cjk_width", "lowercase", "cjk_bigram"));
+		analyzers.put(CJK_UNIGRAM, analyzer("standard", "cjk_width", "lowercase"));
+		analyzers.put(SearchableField.EDGE_NGRAM, analyzer("standard", "lowercase", EDGE_NGRAM_FILTER));
+		analyzers.put(EDGE_NGRAM_SEARCH, analyzer("standard", "lowercase"));
+		Map<String, Object> filters = new HashMap<>();
+		Map<String, Object> edgeNgram = new HashMap<>();
+		edgeNgram.put("type", "edge_ngram");
+		edgeNgram.put("min_gram", EDGE_NGRAM_MIN);
+		edgeNgram.put("max_gram", EDGE_NGRAM_MAX);
+		filters.put(EDGE_NGRAM_FILTER, edgeNgram);
+		analysis.put("analyzer", analyzers);
+		analysis.put("filter", filters);
+		for (Map.Entry<String, Map<String, Object>> entry : extra.entrySet()) {
+			analysis.computeIfAbsent(entry.getKey(), (k) -> new HashMap<>()).putAll(entry.getValue());
+		}
+		return new HashMap<>(analysis);
+	}
+
+	static Map<String, Object> analyzer(String tokenizer, String... filters) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("type", "custom");
+		map.put("tokenizer", tokenizer);
+		map.put("filter", Arrays.asList(filters));
+		return map;
+	}
+}
@@ -0,0 +1,169 @@
+package com.itranswarp.search;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Access id and fields of a searchable bean by index. Fields are kept in a
+ * fixed-order array so no map lookup is needed when reading or writing a bean.
+ */
+abstract class BeanAccessor {
+
+	static final Log log = LogFactory.getLog(BeanAccessor.class);
+
+	static final int KIND_OBJECT = 0;
+	static final int KIND_STRING = 1;
+	static final int KIND_INT = 2;
+	static final int KIND_LONG = 3;
+	static final int KIND_BOOLEAN = 4;
+	static final int KIND_FLOAT = 5;
+	static final int KIND_DOUBLE = 6;
+
+	final Class<?> clazz;
+	final Field id;
+	final Field[] fields;
+	final int[] kinds;
+
+	BeanAccessor(Class<?> clazz, Field id, Field[] fields) {
+		this.clazz = clazz;
+		this.id = id;
+		this.fields = fields;
+		this.kinds = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			this.kinds[i] = kindOf(fields[i].getType());
+		}
+	}
+
+	static int kindOf(Class<?> type) {
+		if (type == String.class) {
+			return KIND_STRING;
+		}
+		if (type == int.class) {
+			return KIND_INT;
+		}
+		if (type == long.class) {
+			return KIND_LONG;
+		}
+		if (type == boolean.class) {
+			return KIND_BOOLEAN;
+		}
+		if (type == float.class) {
+			return KIND_FLOAT;
+		}
+		if (type == double.class) {
+			return KIND_DOUBLE;
+		}
+		return KIND_OBJECT;
+	}
+
+	/**
+	 * Create accessor for class. Generated accessor is preferred, and fall back
+	 * to reflection if generation is not possible.
+	 * 
+	 * @param clazz
+	 *            Bean class.
+	 * @param id
+	 *            Id field.
+	 * @param fields
+	 *            Fields in fixed order.
+	 * @return BeanAccessor object.
+	 */
+	static BeanAccessor create(Class<?> clazz, Field id, Field[] fields) {
+		if (Modifier.isPublic(clazz.getModifiers())) {
+			try {
+				return new GeneratedBeanAccessor(clazz, id, fields);
+			} catch (Throwable e) {
+				log.warn("Cannot generate accessor for class " + clazz.getName() + ". Fall back to reflection.", e);
+			}
+		}
+		return new ReflectionBeanAccessor(clazz, id, fields);
+	}
+
+	abstract Object newInstance();
+
+	abstract String getId(Object bean);
+
+	abstract void setId(Object bean, String value);
+
+	abstract Object get(Object bean, int index);
+
+	abstract void set(Object bean, int index, Object value);
+
+	/**
+	 * Get values of all fields.
+	 * 
+	 * @param bean
+	 *            Bean object.
+	 * @return Values in field order.
+	 */
+	Object[] getAll(Object bean) {
+		Object[] values = new Object[fields.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = get(bean, i);
+		}
+		return values;
+	}
+
+	/**
+	 * Set all fields as set() does. Null is ignored for primitive fields.
+	 * 
+	 * @param bean
+	 *            Bean object.
+	 * @param values
+	 *            Values in field order.
+	 */
+	void setAll(Object bean, Object[] values) {
+		for (int i = 0; i < values.length; i++) {
+			set(bean, i, values[i]);
+		}
+	}
+
+	/**
+	 * Write field value to builder. Primitive fields are written without
+	 * boxing.
+	 * 
+	 * @param bean
+	 *            Bean object.
+	 * @param index
+	 *            Field index.
+	 * @param name
+	 *            Field name.
+	 * @param builder
+	 *            The XContentBuilder.
+	 */
+	abstract void write(Object bean, int index, String name, XContentBuilder builder) throws IOException;
+
+	/**
+	 * Convert value parsed from JSON to the field type. JSON numbers may be
+	 * parsed as any of Integer, Long or Double, so they are converted by Number.
+	 * 
+	 * @param type
+	 *            Field type.
+	 * @param value
+	 *            Value parsed from JSON, can be null.
+	 * @return Converted value.
+	 */
+	static Object convert(Class<?> type, Object value) {
+		if (value instanceof Number) {
+			Number n = (Number) value;
+			if (type == int.class || type == Integer.class) {
+				return n.intValue();
+			}
+			if (type == long.class || type == Long.class) {
+				return n.longValue();
+			}
+			if (type == float.class || type == Float.class) {
+				return n.floatValue();
+			}
+			if (type == double.class || type == Double.class) {
+				return n.doubleValue();
+			}
+		}
+		return value;
+	}
+}
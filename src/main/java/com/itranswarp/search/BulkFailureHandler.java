@@ -0,0 +1,20 @@
+package com.itranswarp.search;
+
+/**
+ * Callback for documents that failed in a bulk request.
+ */
+@FunctionalInterface
+public interface BulkFailureHandler {
+
+	/**
+	 * Called once for each failed document.
+	 * 
+	 * @param type
+	 *            Document type.
+	 * @param id
+	 *            Document id.
+	 * @param cause
+	 *            The failure cause.
+	 */
+	void onFailure(String type, String id, Throwable cause);
+}
@@ -0,0 +1,254 @@
+package com.itranswarp.search;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.DocumentRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+
+import com.itranswarp.search.MetricsListener.Operation;
+
+/**
+ * Buffer index and unindex operations into bulk requests. A bulk request is
+ * sent when the number of buffered documents, the buffered bytes or the flush
+ * interval is reached, whichever comes first.
+ * 
+ * Obtain a bulk indexer by SearchableClient.createBulkIndexer(), and always
+ * close it to flush the remaining documents.
+ */
+public class BulkIndexer implements AutoCloseable {
+
+	static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final SearchableClient searchableClient;
+	private final BulkFailureHandler failureHandler;
+	private final BulkProcessor processor;
+
+	// document types added to this indexer, invalidated in search cache after each bulk:
+	private final Set<Mapping> mappings = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong succeeded = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	// send time of bulk requests in flight by execution id:
+	private final ConcurrentMap<Long, Long> inFlightRequests = new ConcurrentHashMap<>();
+
+	BulkIndexer(SearchableClient searchableClient, Client client, int bulkActions, long bulkSizeInBytes,
+			long flushIntervalInMillis, int concurrentRequests, BulkFailureHandler failureHandler) {
+		this.searchableClient = searchableClient;
+		this.failureHandler = failureHandler;
+		BulkProcessor.Builder builder = BulkProcessor.builder(client, new Listener())
+				.setBulkActions(bulkActions <= 0 ? -1 : bulkActions)
+				.setBulkSize(new ByteSizeValue(bulkSizeInBytes <= 0 ? -1 : bulkSizeInBytes))
+				.setConcurrentRequests(concurrentRequests);
+		if (flushIntervalInMillis > 0) {
+			builder.setFlushInterval(TimeValue.timeValueMillis(flushIntervalInMillis));
+		}
+		this.processor = builder.build();
+	}
+
+	/**
+	 * Add a searchable bean to be indexed.
+	 * 
+	 * @param bean
+	 *            Searchable bean.
+	 */
+	public <T> void index(T bean) {
+		Mapping mapping = searchableClient.getMappingFromBean(bean);
+		mappings.add(mapping);
+		processor.add(new IndexRequest(searchableClient.getWriteIndex(mapping), mapping.getType(), mapping.getId(bean))
+				.routing(mapping.getRouting(bean)).source(mapping.getSourceAsBytes(bean)));
+	}
+
+	/**
+	 * Add a searchable bean to be unindexed. Not supported for rolling document
+	 * types, use SearchableClient.unindex() instead.
+	 * 
+	 * @param bean
+	 *            Searchable bean.
+	 */
+	public <T> void unindex(T bean) {
+		Mapping mapping = searchableClient.getMappingFromBean(bean);
+		checkNotRolling(mapping);
+		mappings.add(mapping);
+		processor.add(new DeleteRequest(searchableClient.getWriteIndex(mapping), mapping.getType(), mapping.getId(bean))
+				.routing(mapping.getRouting(bean)));
+	}
+
+	/**
+	 * Add a document to be unindexed. Not supported for rolling document types,
+	 * use SearchableClient.unindex() instead.
+	 * 
+	 * @param clazz
+	 *            Class type.
+	 * @param id
+	 *            Id as string.
+	 */
+	public <T> void unindex(Class<T> clazz, String id) {
+		unindexWithRouting(clazz, null, id);
+	}
+
+	/**
+	 * Add a document of type with @SearchableRouting to be unindexed.
+	 * 
+	 * @param clazz
+	 *            Class type.
+	 * @param routing
+	 *            Routing of document.
+	 * @param id
+	 *            Id as string.
+	 */
+	public <T> void unindexWithRouting(Class<T> clazz, String routing, String id) {
+		Mapping mapping = searchableClient.getMappingFromClass(clazz);
+		searchableClient.checkRouting(mapping, routing);
+		checkNotRolling(mapping);
+		mappings.add(mapping);
+		processor.add(
+				new DeleteRequest(searchableClient.getWriteIndex(mapping), mapping.getType(), id).routing(routing));
+	}
+
+	void checkNotRolling(Mapping mapping) {
+		// document may be in any rolling index, but delete request needs the exact one:
+		if (mapping.isRolling()) {
+			throw new IllegalArgumentException("Cannot unindex rolling document type " + mapping.getType()
+					+ " in bulk. Use SearchableClient.unindex() instead.");
+		}
+	}
+
+	void add(IndexRequest request) {
+		processor.add(request);
+	}
+
+	/**
+	 * Send buffered documents immediately.
+	 */
+	public void flush() {
+		processor.flush();
+	}
+
+	/**
+	 * Get number of documents indexed or unindexed successfully.
+	 * 
+	 * @return Number of succeeded documents.
+	 */
+	public long getSucceeded() {
+		return succeeded.get();
+	}
+
+	/**
+	 * Get number of documents failed.
+	 * 
+	 * @return Number of failed documents.
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * Flush buffered documents and wait for all bulk requests to complete.
+	 */
+	@Override
+	public void close() {
+		awaitClose();
+	}
+
+	/**
+	 * Flush buffered documents and wait for all bulk requests to complete.
+	 * 
+	 * @return True if all bulk requests completed, false if timed out or
+	 *         interrupted.
+	 */
+	boolean awaitClose() {
+		boolean completed = false;
+		try {
+			completed = processor.awaitClose(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			if (!completed) {
+				log.warn("Bulk requests are not completed in " + CLOSE_TIMEOUT_SECONDS + " seconds.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		log.info("Bulk indexer closed: " + succeeded.get() + " succeeded, " + failed.get() + " failed.");
+		return completed;
+	}
+
+	void onFailure(String type, String id, Throwable cause) {
+		failed.incrementAndGet();
+		if (failureHandler == null) {
+			log.warn("Type " + type + "@" + id + " failed in bulk request.", cause);
+		} else {
+			failureHandler.onFailure(type, id, cause);
+		}
+	}
+
+	void invalidateCache() {
+		for (Mapping mapping : mappings) {
+			searchableClient.invalidateCache(mapping);
+		}
+	}
+
+	class Listener implements BulkProcessor.Listener {
+
+		@Override
+		public void beforeBulk(long executionId, BulkRequest request) {
+			inFlightRequests.put(executionId, System.nanoTime());
+			if (log.isDebugEnabled()) {
+				log.debug("Send bulk request #" + executionId + " with " + request.numberOfActions() + " actions.");
+			}
+		}
+
+		@Override
+		public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+			long received = System.nanoTime();
+			Long start = inFlightRequests.remove(executionId);
+			if (log.isDebugEnabled()) {
+				log.debug("Bulk request #" + executionId + " completed in " + response.getTookInMillis() + " ms.");
+			}
+			int failures = 0;
+			for (BulkItemResponse item : response.getItems()) {
+				if (item.isFailed()) {
+					failures++;
+					onFailure(item.getType(), item.getId(), item.getFailure().getCause());
+				} else {
+					succeeded.incrementAndGet();
+				}
+			}
+			invalidateCache();
+			RequestRecorder recorder = searchableClient.recorder;
+			recorder.record(Operation.BULK, null, response, start == null ? received : start, received, received);
+			recorder.onBulk(request.numberOfActions(), failures, inFlightRequests.size());
+		}
+
+		@Override
+		public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+			inFlightRequests.remove(executionId);
+			log.warn("Bulk request #" + executionId + " failed.", failure);
+			RequestRecorder recorder = searchableClient.recorder;
+			recorder.onError(Operation.BULK, null, failure);
+			recorder.onBulk(request.numberOfActions(), request.numberOfActions(), inFlightRequests.size());
+			invalidateCache();
+			for (ActionRequest<?> r : request.requests()) {
+				if (r instanceof DocumentRequest) {
+					DocumentRequest<?> dr = (DocumentRequest<?>) r;
+					onFailure(dr.type(), dr.id(), failure);
+				}
+			}
+		}
+	}
+}
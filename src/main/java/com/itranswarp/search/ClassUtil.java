@@ -1,13 +1,31 @@
 package com.itranswarp.search;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -16,78 +34,259 @@ class ClassUtil {
 
 	static final Log log = LogFactory.getLog(ClassUtil.class);
 
-	public static List<Class<?>> scan(String basePackage, Predicate<Class<?>> predicate) {
-		List<Class<?>> classes = new ArrayList<>(100);
+	/**
+	 * Scan classes under basePackage which are annotated with annotation.
+	 * Class files are filtered by reading their constant pool, so only classes
+	 * referring the annotation are loaded, and no class is initialized. Roots
+	 * of the package in different dirs or jars are scanned in parallel.
+	 * 
+	 * @param basePackage
+	 *            Base package.
+	 * @param annotation
+	 *            Annotation with runtime retention.
+	 * @return List of classes ordered by name.
+	 */
+	public static List<Class<?>> scan(String basePackage, Class<? extends Annotation> annotation) {
+		ClassLoader cl = ClassUtil.class.getClassLoader();
 		try {
-			loadClasses(basePackage, classes, predicate);
-		} catch (RuntimeException e) {
-			throw e;
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+			return find(cl, basePackage, annotation, null,
+					Collections.list(cl.getResources(basePackage.replace('.', '/'))), Collections.emptyList());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		return classes;
 	}
 
-	static void loadClasses(String basePackage, List<Class<?>> classes, Predicate<Class<?>> predicate)
-			throws Exception {
-		ClassLoader cl = ClassUtil.class.getClassLoader();
-		Enumeration<URL> resources = cl.getResources(basePackage.replace('.', '/'));
-		while (resources.hasMoreElements()) {
-			String url = resources.nextElement().toString();
-			if (url.startsWith("file:")) {
-				File dir = new File(url.substring(5));
+	static List<String> scanRoot(URL url, String path, byte[] descriptor) {
+		List<String> names = new ArrayList<>();
+		try {
+			String s = url.toString();
+			if (s.startsWith("file:")) {
+				File dir = new File(url.toURI());
 				if (dir.isDirectory()) {
-					loadClassesInDir(dir, basePackage, classes, predicate);
+					scanDir(dir, path, descriptor, names);
 				}
-			} else if (url.startsWith("jar:file:")) {
-				String jar = url.substring(9, url.length() - basePackage.length() - 2);
-				loadClassesInJar(new File(jar), basePackage, classes, predicate);
+			} else if (s.startsWith("jar:file:")) {
+				String jar = s.substring(4, s.indexOf("!/"));
+				scanJar(new File(new URI(jar)), path, descriptor, names);
 			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid class path: " + url, e);
 		}
+		return names;
 	}
 
-	static void loadClassesInDir(File dir, String basePackage, List<Class<?>> classes, Predicate<Class<?>> predicate)
-			throws Exception {
+	static void scanDir(File dir, String path, byte[] descriptor, List<String> names) throws IOException {
 		log.debug("Scan classes in dir: " + dir.getAbsolutePath());
 		String[] subs = dir.list();
+		if (subs == null) {
+			return;
+		}
 		for (String sub : subs) {
-			File file = new File(dir.getAbsolutePath() + File.separator + sub);
+			File file = new File(dir, sub);
 			if (file.isDirectory()) {
-				loadClassesInDir(file, basePackage + "." + sub, classes, predicate);
+				scanDir(file, path + "/" + sub, descriptor, names);
 			} else if (sub.endsWith(".class") && file.isFile()) {
-				String className = basePackage + "." + sub.substring(0, sub.length() - 6);
-				Class<?> clazz = tryLoadClass(className);
-				if (clazz != null && predicate.test(clazz)) {
-					log.info("Found target class: " + className);
-					classes.add(clazz);
+				try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+					if (refersTo(input, descriptor)) {
+						names.add(toClassName(path + "/" + sub));
+					}
 				}
 			}
 		}
 	}
 
-	static void loadClassesInJar(File jarFile, String basePackage, List<Class<?>> classes,
-			Predicate<Class<?>> predicate) throws Exception {
+	static void scanJar(File jarFile, String path, byte[] descriptor, List<String> names) throws IOException {
 		log.info("Scan classes in jar: " + jarFile.getCanonicalPath());
-		try (JarFile jar = new JarFile(jarFile.getCanonicalPath())) {
+		String prefix = path + "/";
+		try (JarFile jar = new JarFile(jarFile)) {
 			Enumeration<JarEntry> e = jar.entries();
 			while (e.hasMoreElements()) {
 				JarEntry entry = e.nextElement();
 				String name = entry.getName();
-				if (name.endsWith(".class") && !entry.isDirectory()) {
-					String className = name.substring(0, name.length() - 6).replace('/', '.');
-					Class<?> clazz = tryLoadClass(className);
-					if (clazz != null && predicate.test(clazz)) {
-						classes.add(clazz);
+				if (name.startsWith(prefix) && name.endsWith(".class") && !entry.isDirectory()) {
+					try (InputStream input = new BufferedInputStream(jar.getInputStream(entry))) {
+						if (refersTo(input, descriptor)) {
+							names.add(toClassName(name));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	static String toClassName(String classFile) {
+		return classFile.substring(0, classFile.length() - 6).replace('/', '.');
+	}
+
+	/**
+	 * Check if constant pool of class file contains the UTF-8 constant. Only
+	 * the header of class file is read.
+	 * 
+	 * @param input
+	 *            Input of class file.
+	 * @param utf8
+	 *            Bytes of UTF-8 constant.
+	 * @return True if the constant is found.
+	 */
+	static boolean refersTo(InputStream input, byte[] utf8) throws IOException {
+		DataInputStream in = new DataInputStream(input);
+		if (in.readInt() != 0xcafebabe) {
+			return false;
+		}
+		in.skipBytes(4); // minor and major version
+		int count = in.readUnsignedShort();
+		byte[] buffer = new byte[utf8.length];
+		for (int i = 1; i < count; i++) {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+			case 1: // Utf8
+				int length = in.readUnsignedShort();
+				if (length == utf8.length) {
+					in.readFully(buffer);
+					if (Arrays.equals(buffer, utf8)) {
+						return true;
+					}
+				} else {
+					skipFully(in, length);
+				}
+				break;
+			case 7: // Class
+			case 8: // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				skipFully(in, 2);
+				break;
+			case 15: // MethodHandle
+				skipFully(in, 3);
+				break;
+			case 3: // Integer
+			case 4: // Float
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				skipFully(in, 4);
+				break;
+			case 5: // Long
+			case 6: // Double
+				skipFully(in, 8);
+				i++; // takes two entries
+				break;
+			default:
+				throw new IOException("Invalid constant pool tag: " + tag);
+			}
+		}
+		return false;
+	}
+
+	static void skipFully(DataInputStream in, int n) throws IOException {
+		while (n > 0) {
+			int skipped = in.skipBytes(n);
+			if (skipped <= 0) {
+				throw new EOFException();
+			}
+			n -= skipped;
+		}
+	}
+
+	/**
+	 * Find classes under basePackage annotated with annotation. Classes in a
+	 * classpath root with the index resource written at compile time are read
+	 * from the index, and other roots of the package are scanned, e.g. jars
+	 * compiled without the annotation processor. No class is initialized.
+	 * 
+	 * @param basePackage
+	 *            Base package.
+	 * @param annotation
+	 *            Annotation with runtime retention.
+	 * @param resource
+	 *            Name of index resource.
+	 * @return List of classes ordered by name.
+	 */
+	public static List<Class<?>> find(String basePackage, Class<? extends Annotation> annotation, String resource) {
+		ClassLoader cl = ClassUtil.class.getClassLoader();
+		try {
+			return find(cl, basePackage, annotation, resource,
+					Collections.list(cl.getResources(basePackage.replace('.', '/'))),
+					Collections.list(cl.getResources(resource)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static List<Class<?>> find(ClassLoader cl, String basePackage, Class<? extends Annotation> annotation,
+			String resource, List<URL> roots, List<URL> indexes) {
+		String path = basePackage.replace('.', '/');
+		String prefix = basePackage + ".";
+		Set<String> indexedRoots = new HashSet<>();
+		Set<String> candidates = new TreeSet<>();
+		for (URL url : indexes) {
+			log.info("Load class index: " + url);
+			indexedRoots.add(rootOf(url, resource));
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (line.startsWith(prefix)) {
+						candidates.add(line);
 					}
 				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		List<URL> unindexed = roots.stream().filter((url) -> {
+			return !indexedRoots.contains(rootOf(url, path));
+		}).collect(Collectors.toList());
+		if (!unindexed.isEmpty()) {
+			if (!indexedRoots.isEmpty()) {
+				log.info("Scan " + unindexed.size() + " classpath root(s) without class index: " + unindexed);
+			}
+			byte[] descriptor = ("L" + annotation.getName().replace('.', '/') + ";")
+					.getBytes(StandardCharsets.UTF_8);
+			candidates.addAll(unindexed.parallelStream().flatMap((url) -> {
+				return scanRoot(url, path, descriptor).stream();
+			}).collect(Collectors.toList()));
+		}
+		List<Class<?>> classes = new ArrayList<>(candidates.size());
+		for (String name : candidates) {
+			Class<?> clazz = tryLoadClass(name, cl);
+			// constant pool may refer the annotation without annotating class:
+			if (clazz != null && clazz.isAnnotationPresent(annotation)) {
+				log.info("Found target class: " + name);
+				classes.add(clazz);
 			}
 		}
+		return classes;
+	}
+
+	/**
+	 * Get classpath root of a resource URL, e.g. "file:/app/classes/" of
+	 * "file:/app/classes/com/example", or "jar:file:/app/lib.jar!/" of
+	 * "jar:file:/app/lib.jar!/com/example/".
+	 */
+	static String rootOf(URL url, String name) {
+		String s = url.toString();
+		if (s.endsWith("/")) {
+			s = s.substring(0, s.length() - 1);
+		}
+		return s.endsWith(name) ? s.substring(0, s.length() - name.length()) : s;
 	}
 
-	static Class<?> tryLoadClass(String name) throws ClassNotFoundException {
+	/**
+	 * Load class without initialization.
+	 */
+	static Class<?> tryLoadClass(String name, ClassLoader cl) {
 		try {
-			return Class.forName(name);
-		} catch (NoClassDefFoundError e) {
+			return Class.forName(name, false, cl);
+		} catch (ClassNotFoundException | LinkageError e) {
+			log.warn("Cannot load class: " + name, e);
 			return null;
 		}
 	}
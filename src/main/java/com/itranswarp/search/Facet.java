@@ -0,0 +1,53 @@
+package com.itranswarp.search;
+
+import java.util.List;
+
+/**
+ * Counts of documents grouped by terms or histogram intervals of a field,
+ * computed by ES for all hits of a search.
+ */
+public class Facet {
+
+	public final String field;
+
+	/**
+	 * Buckets ordered by count for terms, or by key for histogram.
+	 */
+	public final List<Bucket> buckets;
+
+	/**
+	 * Number of documents not in any returned bucket. Always 0 for histogram.
+	 */
+	public final long otherCount;
+
+	public Facet(String field, List<Bucket> buckets, long otherCount) {
+		this.field = field;
+		this.buckets = buckets;
+		this.otherCount = otherCount;
+	}
+
+	public static class Bucket {
+
+		/**
+		 * Key of bucket, typed as the field: String, Boolean or Number.
+		 */
+		public final Object key;
+
+		public final long count;
+
+		public Bucket(Object key, long count) {
+			this.key = key;
+			this.count = count;
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + count;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Facet(" + field + ": " + buckets + ", other=" + otherCount + ")";
+	}
+}
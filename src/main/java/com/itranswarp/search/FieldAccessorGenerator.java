@@ -0,0 +1,411 @@
+package com.itranswarp.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generate a small class per field which reads the field by getfield and
+ * writes it by putfield. The class implements Function and BiConsumer, and
+ * primitive int, long, double and boolean fields also implement
+ * ToIntFunction, ToLongFunction, ToDoubleFunction and Predicate so they can be
+ * read without boxing. Unlike a MethodHandle held in an instance field, the
+ * field access in a generated class is constant, so JIT can inline it.
+ * 
+ * A class per bean reading and writing all fields as an array is also
+ * generated, so that a bean is copied by one monomorphic call instead of a
+ * call per field.
+ * 
+ * Classes are defined by a class loader whose parent is the loader of the bean
+ * class, so the bean class and its public fields must be public.
+ */
+class FieldAccessorGenerator {
+
+	static final String OBJECT = "java/lang/Object";
+	static final String GETTER_DESC = "(Ljava/lang/Object;)Ljava/lang/Object;";
+	static final String SETTER_DESC = "(Ljava/lang/Object;Ljava/lang/Object;)V";
+
+	static final Map<Class<?>, Primitive> PRIMITIVES = new HashMap<>();
+
+	static {
+		PRIMITIVES.put(int.class, new Primitive("I", "java/lang/Integer", "intValue", 0xac,
+				"java/util/function/ToIntFunction", "applyAsInt"));
+		PRIMITIVES.put(long.class, new Primitive("J", "java/lang/Long", "longValue", 0xad,
+				"java/util/function/ToLongFunction", "applyAsLong"));
+		PRIMITIVES.put(double.class, new Primitive("D", "java/lang/Double", "doubleValue", 0xaf,
+				"java/util/function/ToDoubleFunction", "applyAsDouble"));
+		PRIMITIVES.put(boolean.class, new Primitive("Z", "java/lang/Boolean", "booleanValue", 0xac,
+				"java/util/function/Predicate", "test"));
+		PRIMITIVES.put(float.class, new Primitive("F", "java/lang/Float", "floatValue", 0xae, null, null));
+		PRIMITIVES.put(short.class, new Primitive("S", "java/lang/Short", "shortValue", 0xac, null, null));
+		PRIMITIVES.put(byte.class, new Primitive("B", "java/lang/Byte", "byteValue", 0xac, null, null));
+		PRIMITIVES.put(char.class, new Primitive("C", "java/lang/Character", "charValue", 0xac, null, null));
+	}
+
+	static class Primitive {
+		final String desc;
+		final String box;
+		final String unboxMethod;
+		final int returnOpcode;
+		final String typedInterface;
+		final String typedMethod;
+
+		Primitive(String desc, String box, String unboxMethod, int returnOpcode, String typedInterface,
+				String typedMethod) {
+			this.desc = desc;
+			this.box = box;
+			this.unboxMethod = unboxMethod;
+			this.returnOpcode = returnOpcode;
+			this.typedInterface = typedInterface;
+			this.typedMethod = typedMethod;
+		}
+	}
+
+	static class AccessorClassLoader extends ClassLoader {
+
+		AccessorClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] b) {
+			return defineClass(name, b, 0, b.length);
+		}
+	}
+
+	final AccessorClassLoader loader;
+	final Class<?> clazz;
+
+	FieldAccessorGenerator(Class<?> clazz) {
+		this.clazz = clazz;
+		this.loader = new AccessorClassLoader(clazz.getClassLoader());
+	}
+
+	/**
+	 * Generate accessor of field.
+	 *
+	 * @param field
+	 *            Public field of bean class.
+	 * @return Instance of generated class.
+	 */
+	Object generate(Field field) throws ReflectiveOperationException {
+		String name = clazz.getName() + "$$FieldAccessor$" + field.getName();
+		Class<?> accessorClass = loader.define(name, generateClass(name.replace('.', '/'), field));
+		return accessorClass.getConstructor().newInstance();
+	}
+
+	/**
+	 * Generate accessor of all fields, which is a Function returning values of
+	 * fields as Object[], and a BiConsumer setting fields from Object[]. Values
+	 * of primitive fields must not be null when setting.
+	 * 
+	 * @param fields
+	 *            Public fields of bean class.
+	 * @return Instance of generated class.
+	 */
+	Object generate(Field[] fields) throws ReflectiveOperationException {
+		String name = clazz.getName() + "$$BeanAccessor";
+		Class<?> accessorClass = loader.define(name, generateClass(name.replace('.', '/'), fields));
+		return accessorClass.getConstructor().newInstance();
+	}
+
+	byte[] generateClass(String className, Field[] fields) {
+		ConstantPool cp = new ConstantPool();
+		int thisClass = cp.classRef(className);
+		int superClass = cp.classRef(OBJECT);
+		List<Integer> interfaces = new ArrayList<>();
+		interfaces.add(cp.classRef("java/util/function/Function"));
+		interfaces.add(cp.classRef("java/util/function/BiConsumer"));
+		int codeName = cp.utf8("Code");
+		int beanClass = cp.classRef(internalName(clazz));
+		List<byte[]> methods = new ArrayList<>();
+		methods.add(method(cp, codeName, "<init>", "()V", constructor(cp, superClass)));
+		// Object apply(Object) returns new Object[] { bean.f0, bean.f1, ... }:
+		Code apply = new Code();
+		apply.push(fields.length);
+		apply.op(0xbd, cp.classRef(OBJECT)); // anewarray
+		apply.op(0x4d); // astore_2
+		for (int i = 0; i < fields.length; i++) {
+			Primitive p = PRIMITIVES.get(fields[i].getType());
+			apply.op(0x2c); // aload_2
+			apply.push(i);
+			apply.op(0x2b); // aload_1
+			apply.op(0xc0, beanClass); // checkcast
+			apply.op(0xb4, fieldRef(cp, beanClass, fields[i], p)); // getfield
+			if (p != null) {
+				apply.op(0xb8, box(cp, p)); // invokestatic
+			}
+			apply.op(0x53); // aastore
+		}
+		apply.op(0x2c);
+		apply.op(0xb0); // areturn
+		methods.add(method(cp, codeName, "apply", GETTER_DESC, apply));
+		// void accept(Object, Object) sets bean.f0 = values[0], ...:
+		Code accept = new Code();
+		accept.op(0x2c); // aload_2
+		accept.op(0xc0, cp.classRef("[Ljava/lang/Object;"));
+		accept.op(0x4e); // astore_3
+		for (int i = 0; i < fields.length; i++) {
+			Primitive p = PRIMITIVES.get(fields[i].getType());
+			accept.op(0x2b); // aload_1
+			accept.op(0xc0, beanClass);
+			accept.op(0x2d); // aload_3
+			accept.push(i);
+			accept.op(0x32); // aaload
+			unbox(cp, accept, fields[i].getType(), p);
+			accept.op(0xb5, fieldRef(cp, beanClass, fields[i], p)); // putfield
+		}
+		accept.op(0xb1); // return
+		methods.add(method(cp, codeName, "accept", SETTER_DESC, accept));
+		return toClassFile(cp, thisClass, superClass, interfaces, methods);
+	}
+
+	byte[] generateClass(String className, Field field) {
+		Class<?> type = field.getType();
+		Primitive p = PRIMITIVES.get(type);
+		ConstantPool cp = new ConstantPool();
+		int thisClass = cp.classRef(className);
+		int superClass = cp.classRef(OBJECT);
+		List<Integer> interfaces = new ArrayList<>();
+		interfaces.add(cp.classRef("java/util/function/Function"));
+		interfaces.add(cp.classRef("java/util/function/BiConsumer"));
+		if (p != null && p.typedInterface != null) {
+			interfaces.add(cp.classRef(p.typedInterface));
+		}
+		int codeName = cp.utf8("Code");
+		int beanClass = cp.classRef(internalName(clazz));
+		int fieldRef = fieldRef(cp, beanClass, field, p);
+		List<byte[]> methods = new ArrayList<>();
+		methods.add(method(cp, codeName, "<init>", "()V", constructor(cp, superClass)));
+		// Object apply(Object):
+		Code apply = new Code();
+		apply.op(0x2b); // aload_1
+		apply.op(0xc0, beanClass); // checkcast
+		apply.op(0xb4, fieldRef); // getfield
+		if (p != null) {
+			apply.op(0xb8, box(cp, p)); // invokestatic
+		}
+		apply.op(0xb0); // areturn
+		methods.add(method(cp, codeName, "apply", GETTER_DESC, apply));
+		// void accept(Object, Object):
+		Code accept = new Code();
+		accept.op(0x2b); // aload_1
+		accept.op(0xc0, beanClass);
+		accept.op(0x2c); // aload_2
+		unbox(cp, accept, type, p);
+		accept.op(0xb5, fieldRef); // putfield
+		accept.op(0xb1); // return
+		methods.add(method(cp, codeName, "accept", SETTER_DESC, accept));
+		// typed getter without boxing:
+		if (p != null && p.typedInterface != null) {
+			Code typed = new Code();
+			typed.op(0x2b);
+			typed.op(0xc0, beanClass);
+			typed.op(0xb4, fieldRef);
+			typed.op(p.returnOpcode);
+			methods.add(method(cp, codeName, p.typedMethod, "(Ljava/lang/Object;)" + p.desc, typed));
+		}
+		return toClassFile(cp, thisClass, superClass, interfaces, methods);
+	}
+
+	Code constructor(ConstantPool cp, int superClass) {
+		Code init = new Code();
+		init.op(0x2a); // aload_0
+		init.op(0xb7, cp.memberRef(superClass, "<init>", "()V")); // invokespecial
+		init.op(0xb1); // return
+		return init;
+	}
+
+	int fieldRef(ConstantPool cp, int beanClass, Field field, Primitive p) {
+		return cp.memberRef(beanClass, field.getName(), p == null ? descriptorOf(field.getType()) : p.desc);
+	}
+
+	/**
+	 * Get Methodref of Box.valueOf().
+	 */
+	int box(ConstantPool cp, Primitive p) {
+		return cp.memberRef(cp.classRef(p.box), "valueOf", "(" + p.desc + ")L" + p.box + ";");
+	}
+
+	/**
+	 * Cast object on stack to field type, and unbox it if field is primitive.
+	 */
+	void unbox(ConstantPool cp, Code code, Class<?> type, Primitive p) {
+		if (p == null) {
+			code.op(0xc0, cp.classRef(internalName(type))); // checkcast
+		} else {
+			code.op(0xc0, cp.classRef(p.box));
+			// invokevirtual Box.xxxValue():
+			code.op(0xb6, cp.memberRef(cp.classRef(p.box), p.unboxMethod, "()" + p.desc));
+		}
+	}
+
+	byte[] toClassFile(ConstantPool cp, int thisClass, int superClass, List<Integer> interfaces,
+			List<byte[]> methods) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xcafebabe);
+			out.writeShort(0); // minor version
+			out.writeShort(52); // Java 8
+			cp.writeTo(out);
+			out.writeShort(0x0001 | 0x0010 | 0x1000 | 0x0020); // public final synthetic super
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaces.size());
+			for (int i : interfaces) {
+				out.writeShort(i);
+			}
+			out.writeShort(0); // fields
+			out.writeShort(methods.size());
+			for (byte[] m : methods) {
+				out.write(m);
+			}
+			out.writeShort(0); // attributes
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Build method_info with a Code attribute. Max stack 4 and max locals 4 are
+	 * enough for all generated methods, which have no branch so no stack map
+	 * frame is needed.
+	 */
+	byte[] method(ConstantPool cp, int codeName, String name, String desc, Code code) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		byte[] b = code.toByteArray();
+		try {
+			out.writeShort(0x0001); // public
+			out.writeShort(cp.utf8(name));
+			out.writeShort(cp.utf8(desc));
+			out.writeShort(1); // attributes
+			out.writeShort(codeName);
+			out.writeInt(12 + b.length);
+			out.writeShort(4); // max stack
+			out.writeShort(4); // max locals
+			out.writeInt(b.length);
+			out.write(b);
+			out.writeShort(0); // exception table
+			out.writeShort(0); // attributes
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	static String internalName(Class<?> type) {
+		return type.getName().replace('.', '/');
+	}
+
+	static String descriptorOf(Class<?> type) {
+		return type.isArray() ? internalName(type) : "L" + internalName(type) + ";";
+	}
+
+	static class Code {
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+
+		void op(int opcode) {
+			bytes.write(opcode);
+		}
+
+		/**
+		 * Push int constant by iconst, bipush or sipush.
+		 */
+		void push(int n) {
+			if (n <= 5) {
+				bytes.write(0x03 + n);
+			} else if (n <= Byte.MAX_VALUE) {
+				bytes.write(0x10);
+				bytes.write(n);
+			} else {
+				op(0x11, n);
+			}
+		}
+
+		void op(int opcode, int index) {
+			bytes.write(opcode);
+			bytes.write(index >> 8);
+			bytes.write(index);
+		}
+
+		byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+	}
+
+	/**
+	 * Constant pool of utf8, class and member references.
+	 */
+	static class ConstantPool {
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		final Map<String, Integer> entries = new HashMap<>();
+		int count = 1;
+
+		int utf8(String s) {
+			return entry("U" + s, () -> {
+				out.writeByte(1);
+				out.writeUTF(s);
+			});
+		}
+
+		int classRef(String internalName) {
+			int name = utf8(internalName);
+			return entry("C" + internalName, () -> {
+				out.writeByte(7);
+				out.writeShort(name);
+			});
+		}
+
+		/**
+		 * Add Methodref if desc is a method descriptor, otherwise Fieldref.
+		 */
+		int memberRef(int classRef, String name, String desc) {
+			int n = utf8(name);
+			int d = utf8(desc);
+			int nameAndType = entry("N" + name + ":" + desc, () -> {
+				out.writeByte(12);
+				out.writeShort(n);
+				out.writeShort(d);
+			});
+			int t = desc.startsWith("(") ? 10 : 9;
+			return entry("M" + t + ":" + classRef + "." + name + ":" + desc, () -> {
+				out.writeByte(t);
+				out.writeShort(classRef);
+				out.writeShort(nameAndType);
+			});
+		}
+
+		int entry(String key, EntryWriter writer) {
+			Integer index = entries.get(key);
+			if (index == null) {
+				try {
+					writer.write();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				index = count++;
+				entries.put(key, index);
+			}
+			return index;
+		}
+
+		void writeTo(DataOutputStream dest) throws IOException {
+			dest.writeShort(count);
+			dest.write(bytes.toByteArray());
+		}
+	}
+
+	interface EntryWriter {
+		void write() throws IOException;
+	}
+}
@@ -0,0 +1,34 @@
+package com.itranswarp.search;
+
+/**
+ * Statistics of a numeric field, computed by ES for all hits of a search.
+ */
+public class FieldStats {
+
+	public final String field;
+
+	public final long count;
+
+	public final double min;
+
+	public final double max;
+
+	public final double avg;
+
+	public final double sum;
+
+	public FieldStats(String field, long count, double min, double max, double avg, double sum) {
+		this.field = field;
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.avg = avg;
+		this.sum = sum;
+	}
+
+	@Override
+	public String toString() {
+		return "FieldStats(" + field + ": count=" + count + ", min=" + min + ", max=" + max + ", avg=" + avg
+				+ ", sum=" + sum + ")";
+	}
+}
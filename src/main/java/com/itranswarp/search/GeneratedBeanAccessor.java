@@ -0,0 +1,145 @@
+package com.itranswarp.search;
+
+import java.io.IOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Access bean by generated code. The constructor is bound to a Supplier by
+ * LambdaMetafactory, and each field is bound to a class generated by
+ * FieldAccessorGenerator, which is a Function and BiConsumer reading and
+ * writing the field directly. Primitive fields are written without boxing.
+ * Reading or writing all fields is done by one generated class of the bean.
+ */
+class GeneratedBeanAccessor extends BeanAccessor {
+
+	final Supplier<Object> constructor;
+	final Function<Object, Object> idGetter;
+	final BiConsumer<Object, Object> idSetter;
+	final Function<Object, Object>[] getters;
+	final BiConsumer<Object, Object>[] setters;
+	final Object[] accessors;
+	final Function<Object, Object> allGetter;
+	final BiConsumer<Object, Object> allSetter;
+	final Class<?>[] types;
+
+	@SuppressWarnings("unchecked")
+	GeneratedBeanAccessor(Class<?> clazz, Field id, Field[] fields) throws Throwable {
+		super(clazz, id, fields);
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle ctor = lookup.findConstructor(clazz, MethodType.methodType(void.class));
+		CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+				MethodType.methodType(Object.class), ctor, MethodType.methodType(clazz));
+		this.constructor = (Supplier<Object>) site.getTarget().invokeExact();
+		FieldAccessorGenerator generator = new FieldAccessorGenerator(clazz);
+		Object idAccessor = generator.generate(id);
+		this.idGetter = (Function<Object, Object>) idAccessor;
+		this.idSetter = (BiConsumer<Object, Object>) idAccessor;
+		this.getters = new Function[fields.length];
+		this.setters = new BiConsumer[fields.length];
+		this.accessors = new Object[fields.length];
+		this.types = new Class<?>[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			Object accessor = generator.generate(fields[i]);
+			this.getters[i] = (Function<Object, Object>) accessor;
+			this.setters[i] = (BiConsumer<Object, Object>) accessor;
+			this.accessors[i] = accessor;
+			this.types[i] = fields[i].getType();
+		}
+		Object allAccessor = generator.generate(fields);
+		this.allGetter = (Function<Object, Object>) allAccessor;
+		this.allSetter = (BiConsumer<Object, Object>) allAccessor;
+	}
+
+	@Override
+	Object newInstance() {
+		return constructor.get();
+	}
+
+	@Override
+	String getId(Object bean) {
+		return idGetter.apply(bean).toString();
+	}
+
+	@Override
+	void setId(Object bean, String value) {
+		idSetter.accept(bean, value);
+	}
+
+	@Override
+	Object get(Object bean, int index) {
+		return getters[index].apply(bean);
+	}
+
+	@Override
+	void set(Object bean, int index, Object value) {
+		Class<?> type = types[index];
+		if (value == null && type.isPrimitive()) {
+			return;
+		}
+		setters[index].accept(bean, convert(type, value));
+	}
+
+	@Override
+	Object[] getAll(Object bean) {
+		return (Object[]) allGetter.apply(bean);
+	}
+
+	@Override
+	void setAll(Object bean, Object[] values) {
+		Object[] current = null;
+		for (int i = 0; i < values.length; i++) {
+			Class<?> type = types[i];
+			if (values[i] == null) {
+				if (type.isPrimitive()) {
+					// keep initial value:
+					if (current == null) {
+						current = getAll(bean);
+					}
+					values[i] = current[i];
+				}
+			} else {
+				values[i] = convert(type, values[i]);
+			}
+		}
+		allSetter.accept(bean, values);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	void write(Object bean, int index, String name, XContentBuilder builder) throws IOException {
+		Object accessor = accessors[index];
+		switch (kinds[index]) {
+		case KIND_INT:
+			builder.field(name, ((ToIntFunction<Object>) accessor).applyAsInt(bean));
+			break;
+		case KIND_LONG:
+			builder.field(name, ((ToLongFunction<Object>) accessor).applyAsLong(bean));
+			break;
+		case KIND_BOOLEAN:
+			builder.field(name, ((Predicate<Object>) accessor).test(bean));
+			break;
+		case KIND_DOUBLE:
+			builder.field(name, ((ToDoubleFunction<Object>) accessor).applyAsDouble(bean));
+			break;
+		case KIND_STRING:
+			builder.field(name, (String) getters[index].apply(bean));
+			break;
+		default:
+			builder.field(name, getters[index].apply(bean));
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package com.itranswarp.search;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * MetricsListener which records latency histograms in nanoseconds per
+ * operation and document type, and counters of errors, hits and bulk requests.
+ * Every value is also recorded with type null, which is the sum of all types.
+ * 
+ * HdrHistogram is an optional dependency, so add org.hdrhistogram:HdrHistogram
+ * to the application to use this class.
+ */
+public class HistogramMetrics implements MetricsListener {
+
+	public enum Phase {
+		TOTAL, NETWORK, TOOK, HYDRATE
+	}
+
+	static final int SIGNIFICANT_DIGITS = 3;
+	static final String ALL_TYPES = "*";
+
+	private final ConcurrentMap<String, ConcurrentHistogram> histograms = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlightBulkRequests = new AtomicInteger();
+	private final AtomicInteger maxInFlightBulkRequests = new AtomicInteger();
+
+	@Override
+	public void onRequest(Operation operation, String type, long networkNanos, long tookNanos, long hydrateNanos) {
+		record(operation, type, Phase.TOTAL, networkNanos + tookNanos + hydrateNanos);
+		record(operation, type, Phase.NETWORK, networkNanos);
+		record(operation, type, Phase.TOOK, tookNanos);
+		record(operation, type, Phase.HYDRATE, hydrateNanos);
+	}
+
+	@Override
+	public void onError(Operation operation, String type, Throwable cause) {
+		count("errors", operation + "/" + key(type));
+		if (type != null) {
+			count("errors", operation + "/" + ALL_TYPES);
+		}
+	}
+
+	@Override
+	public void onHits(String type, long totalHits, int transferredHits) {
+		add("totalHits", key(type), totalHits);
+		add("transferredHits", key(type), transferredHits);
+		add("totalHits", ALL_TYPES, totalHits);
+		add("transferredHits", ALL_TYPES, transferredHits);
+	}
+
+	@Override
+	public void onBulk(int actions, int failed, int inFlightRequests) {
+		add("bulk", "actions", actions);
+		add("bulk", "failed", failed);
+		inFlightBulkRequests.set(inFlightRequests);
+		maxInFlightBulkRequests.accumulateAndGet(inFlightRequests, Math::max);
+	}
+
+	/**
+	 * Get copy of latency histogram.
+	 * 
+	 * @param operation
+	 *            Operation.
+	 * @param type
+	 *            Document type, or null for all types.
+	 * @param phase
+	 *            Phase of latency.
+	 * @return Histogram in nanoseconds, or null if nothing recorded.
+	 */
+	public Histogram getHistogram(Operation operation, String type, Phase phase) {
+		ConcurrentHistogram h = histograms.get(operation + "/" + key(type) + "/" + phase);
+		return h == null ? null : h.copy();
+	}
+
+	public long getErrors(Operation operation, String type) {
+		return get("errors", operation + "/" + key(type));
+	}
+
+	public long getTotalHits(String type) {
+		return get("totalHits", key(type));
+	}
+
+	public long getTransferredHits(String type) {
+		return get("transferredHits", key(type));
+	}
+
+	public long getBulkActions() {
+		return get("bulk", "actions");
+	}
+
+	public long getBulkFailed() {
+		return get("bulk", "failed");
+	}
+
+	/**
+	 * Get number of bulk requests in flight when the last bulk completed.
+	 * Documents buffered but not yet sent are not counted.
+	 * 
+	 * @return In-flight bulk requests.
+	 */
+	public int getInFlightBulkRequests() {
+		return inFlightBulkRequests.get();
+	}
+
+	/**
+	 * Get max number of bulk requests in flight since last reset.
+	 * 
+	 * @return Max in-flight bulk requests.
+	 */
+	public int getMaxInFlightBulkRequests() {
+		return maxInFlightBulkRequests.get();
+	}
+
+	/**
+	 * Clear all histograms and counters.
+	 */
+	public void reset() {
+		histograms.clear();
+		counters.clear();
+		inFlightBulkRequests.set(0);
+		maxInFlightBulkRequests.set(0);
+	}
+
+	/**
+	 * Get a text report with count and percentiles in milliseconds of every
+	 * histogram, one per line, e.g.
+	 * "SEARCH/tweet/TOTAL count=100 p50=1.200 p99=8.500 max=12.000".
+	 * 
+	 * @return Text report.
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder(1024);
+		for (Map.Entry<String, ConcurrentHistogram> e : new TreeMap<>(histograms).entrySet()) {
+			Histogram h = e.getValue().copy();
+			sb.append(e.getKey()).append(" count=").append(h.getTotalCount()).append(" p50=")
+					.append(millis(h.getValueAtPercentile(50))).append(" p99=")
+					.append(millis(h.getValueAtPercentile(99))).append(" max=").append(millis(h.getMaxValue()))
+					.append('\n');
+		}
+		for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+			sb.append(e.getKey()).append('=').append(e.getValue().sum()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	void record(Operation operation, String type, Phase phase, long nanos) {
+		histogram(operation + "/" + key(type) + "/" + phase).recordValue(Math.max(0, nanos));
+		if (type != null) {
+			histogram(operation + "/" + ALL_TYPES + "/" + phase).recordValue(Math.max(0, nanos));
+		}
+	}
+
+	ConcurrentHistogram histogram(String key) {
+		ConcurrentHistogram h = histograms.get(key);
+		if (h == null) {
+			// auto-resized:
+			h = histograms.computeIfAbsent(key, (k) -> new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+		}
+		return h;
+	}
+
+	void count(String name, String key) {
+		add(name, key, 1);
+	}
+
+	void add(String name, String key, long n) {
+		String k = name + ":" + key;
+		LongAdder adder = counters.get(k);
+		if (adder == null) {
+			adder = counters.computeIfAbsent(k, (x) -> new LongAdder());
+		}
+		adder.add(n);
+	}
+
+	long get(String name, String key) {
+		LongAdder adder = counters.get(name + ":" + key);
+		return adder == null ? 0 : adder.sum();
+	}
+
+	static String key(String type) {
+		return type == null ? ALL_TYPES : type;
+	}
+
+	static String millis(long nanos) {
+		return String.format("%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+}
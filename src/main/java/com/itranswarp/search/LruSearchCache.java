@@ -0,0 +1,157 @@
+package com.itranswarp.search;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process search cache bounded by number of entries, evicting least
+ * recently used entries and entries older than TTL.
+ * 
+ * Invalidation by document type is O(1): each type has a generation which is
+ * increased on invalidation, and entries of an old generation are treated as
+ * missing. Results put with an old generation are dropped, since the search
+ * may have run before the write.
+ * 
+ * A write is visible to searches only after ES refreshes the index, so no
+ * generation is given within the refresh interval after an invalidation, and
+ * results of searches started then are not cached.
+ */
+public class LruSearchCache implements SearchCache {
+
+	private final int maxSize;
+	private final long ttlInMillis;
+	private final LinkedHashMap<SearchCacheKey, Entry> entries;
+	private final Map<Class<?>, Long> generations = new HashMap<>();
+	private final Map<Class<?>, Long> invalidatedAt = new HashMap<>();
+	private long refreshInterval = 1000;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Create cache.
+	 * 
+	 * @param maxSize
+	 *            Max number of cached results.
+	 * @param ttlInMillis
+	 *            Time to live in milliseconds.
+	 */
+	public LruSearchCache(int maxSize, long ttlInMillis) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Max size must be positive.");
+		}
+		this.maxSize = maxSize;
+		this.ttlInMillis = ttlInMillis;
+		this.entries = new LinkedHashMap<SearchCacheKey, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<SearchCacheKey, Entry> eldest) {
+				if (size() > LruSearchCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Set refresh interval of ES index. Results of searches started within
+	 * the interval after an invalidation are not cached.
+	 * 
+	 * @param refreshInterval
+	 *            Refresh interval in milliseconds, default to 1000.
+	 */
+	public synchronized void setRefreshInterval(long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	@Override
+	public synchronized SearchResults<?> get(SearchCacheKey key) {
+		long now = System.currentTimeMillis();
+		Entry entry = entries.get(key);
+		if (entry != null && entry.expiresAt < now) {
+			entries.remove(key);
+			evictions++;
+			entry = null;
+		}
+		if (entry != null && entry.generation != generationOf(key.clazz)) {
+			entries.remove(key);
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.results;
+	}
+
+	@Override
+	public synchronized long getGeneration(Class<?> clazz) {
+		Long lastInvalidatedAt = invalidatedAt.get(clazz);
+		if (lastInvalidatedAt != null && System.currentTimeMillis() < lastInvalidatedAt + refreshInterval) {
+			return -1;
+		}
+		return generationOf(clazz);
+	}
+
+	@Override
+	public synchronized void put(SearchCacheKey key, SearchResults<?> results, long generation) {
+		if (generation < 0 || generation != generationOf(key.clazz)) {
+			return;
+		}
+		entries.put(key, new Entry(results, System.currentTimeMillis() + ttlInMillis, generation));
+	}
+
+	@Override
+	public synchronized void invalidate(Class<?> clazz) {
+		generations.put(clazz, generationOf(clazz) + 1);
+		invalidatedAt.put(clazz, System.currentTimeMillis());
+	}
+
+	/**
+	 * Remove all expired and invalidated entries.
+	 */
+	public synchronized void purge() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<SearchCacheKey, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<SearchCacheKey, Entry> e = it.next();
+			Entry entry = e.getValue();
+			if (entry.expiresAt < now) {
+				it.remove();
+				evictions++;
+			} else if (entry.generation != generationOf(e.getKey().clazz)) {
+				it.remove();
+			}
+		}
+	}
+
+	@Override
+	public synchronized SearchCacheStats getStats() {
+		return new SearchCacheStats(hits, misses, evictions);
+	}
+
+	long generationOf(Class<?> clazz) {
+		Long g = generations.get(clazz);
+		return g == null ? 0 : g.longValue();
+	}
+
+	static class Entry {
+
+		final SearchResults<?> results;
+		final long expiresAt;
+		final long generation;
+
+		Entry(SearchResults<?> results, long expiresAt, long generation) {
+			this.results = results;
+			this.expiresAt = expiresAt;
+			this.generation = generation;
+		}
+	}
+}
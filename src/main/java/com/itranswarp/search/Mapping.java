@@ -1,25 +1,121 @@
 package com.itranswarp.search;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+
 public class Mapping {
+
+	/**
+	 * Per-thread buffer to serialize source, reused across documents.
+	 */
+	static final ThreadLocal<BytesStreamOutput> sourceBuffer = ThreadLocal.withInitial(BytesStreamOutput::new);
+
 	final String type;
 	final Class<?> clazz;
 	final Field id;
 	final Map<String, Field> fields;
+	final String[] names;
 	final Map<String, Map<String, Object>> mapping;
+	final BeanAccessor accessor;
+
+	/**
+	 * Subfield of CJK_BIGRAM fields which indexes single characters.
+	 */
+	static final String UNIGRAM_FIELD = "unigram";
+
+	/**
+	 * Text fields with boosts, queried by phrases. Fields using EDGE_NGRAM are
+	 * not queried by phrases unless there is no other text field.
+	 */
+	final Map<String, Float> textFields;
+
+	/**
+	 * Text and keyword fields with boosts, queried by words.
+	 */
+	final Map<String, Float> wordFields;
+
+	/**
+	 * Same as wordFields but CJK_BIGRAM fields are replaced by their unigram
+	 * subfields, queried by single-character words which have no bigram.
+	 */
+	final Map<String, Float> charFields;
+
+	/**
+	 * Index of the document type, or base name of rolling indices. Null to use
+	 * the index of SearchableClient.
+	 */
+	final String index;
+
+	final SearchableDocument.Rollover rollover;
+
+	/**
+	 * Name of completion field which has values of suggest fields as inputs,
+	 * or null if there is no suggest field. The name is prefixed by type so
+	 * that suggestions of different types in one index are not mixed.
+	 */
+	final String suggestField;
+
+	/**
+	 * Indexes of suggest fields.
+	 */
+	final int[] suggestIndexes;
+
+	/**
+	 * Name of routing field, or null if documents are not routed.
+	 */
+	final String routingField;
+
+	final int routingIndex;
 
 	public Mapping(Class<?> clazz) {
+		this(clazz, false);
+	}
+
+	Mapping(Class<?> clazz, boolean useReflection) {
 		this.clazz = clazz;
 		// scan for id and fields:
 		Field id = null;
 		Map<String, Field> fields = new HashMap<>();
+		List<Field> fieldList = new ArrayList<>();
+		Map<String, Float> textFields = new LinkedHashMap<>();
+		Map<String, Float> ngramFields = new LinkedHashMap<>();
+		Map<String, Float> wordFields = new LinkedHashMap<>();
+		Map<String, Float> charFields = new LinkedHashMap<>();
 		Map<String, Map<String, Object>> mapping = new HashMap<>();
+		List<Integer> suggestIndexes = new ArrayList<>();
+		Field routing = null;
+		int routingIndex = -1;
 		for (Field f : clazz.getFields()) {
 			SearchableField sf = f.getAnnotation(SearchableField.class);
+			if (f.isAnnotationPresent(SearchableRouting.class)) {
+				if (sf == null) {
+					throw new IllegalArgumentException("@SearchableRouting field " + clazz.getName() + "."
+							+ f.getName() + " must also be a @SearchableField.");
+				}
+				if (routing != null) {
+					throw new IllegalArgumentException("Only one @SearchableRouting is allowed in class: "
+							+ clazz.getName());
+				}
+				if (!isRoutingType(f.getType(), sf)) {
+					throw new IllegalArgumentException("@SearchableRouting field " + clazz.getName() + "."
+							+ f.getName() + " must be a keyword String, int or long.");
+				}
+				routing = f;
+				routingIndex = fieldList.size();
+			}
 			if (f.isAnnotationPresent(SearchableId.class)) {
 				if (sf != null) {
 					throw new IllegalArgumentException("Cannot use both @SearchableId and @SearchableField.");
@@ -29,37 +125,198 @@ public class Mapping {
 				}
 				id = f;
 			} else if (sf != null) {
-				mapping.put(f.getName(), of("type", sf.keyword() ? "keyword" : getFieldType(f), "boost", sf.boost()));
+				String fieldType = sf.keyword() ? "keyword" : getFieldType(f);
+				mapping.put(f.getName(), createFieldMapping(f, sf, fieldType));
+				if (sf.index()) {
+					if ("text".equals(fieldType)) {
+						if (SearchableField.EDGE_NGRAM.equals(sf.analyzer())) {
+							ngramFields.put(f.getName(), sf.boost());
+						} else {
+							textFields.put(f.getName(), sf.boost());
+						}
+						wordFields.put(f.getName(), sf.boost());
+						if (SearchableField.CJK_BIGRAM.equals(sf.analyzer())) {
+							charFields.put(f.getName() + "." + UNIGRAM_FIELD, sf.boost());
+						} else {
+							charFields.put(f.getName(), sf.boost());
+						}
+					} else if ("keyword".equals(fieldType)) {
+						wordFields.put(f.getName(), sf.boost());
+						charFields.put(f.getName(), sf.boost());
+					}
+				}
+				if (sf.suggest()) {
+					if (f.getType() != String.class) {
+						throw new IllegalArgumentException("Field " + clazz.getName() + "." + f.getName()
+								+ " cannot set suggest since it is not a String field.");
+					}
+					suggestIndexes.add(fieldList.size());
+				}
 				fields.put(f.getName(), f);
+				fieldList.add(f);
 			}
 		}
 		if (id == null) {
 			throw new IllegalArgumentException("@SearchableId not found in class: " + clazz.getName());
 		}
+		// choose fields for phrases:
+		if (textFields.isEmpty()) {
+			textFields = ngramFields;
+		}
 		// init:
 		this.id = id;
 		this.fields = fields;
 		this.mapping = mapping;
+		this.textFields = Collections.unmodifiableMap(textFields);
+		this.wordFields = Collections.unmodifiableMap(wordFields);
+		this.charFields = Collections.unmodifiableMap(charFields);
+		Field[] fieldArray = fieldList.toArray(new Field[fieldList.size()]);
+		this.names = new String[fieldArray.length];
+		for (int i = 0; i < fieldArray.length; i++) {
+			this.names[i] = fieldArray[i].getName();
+		}
+		this.accessor = useReflection ? new ReflectionBeanAccessor(clazz, id, fieldArray)
+				: BeanAccessor.create(clazz, id, fieldArray);
 		this.type = Character.toLowerCase(clazz.getSimpleName().charAt(0)) + clazz.getSimpleName().substring(1);
+		this.routingField = routing == null ? null : routing.getName();
+		this.routingIndex = routingIndex;
+		SearchableDocument sd = clazz.getAnnotation(SearchableDocument.class);
+		this.rollover = sd == null ? SearchableDocument.Rollover.NONE : sd.rollover();
+		if (sd == null || sd.index().isEmpty()) {
+			this.index = this.rollover == SearchableDocument.Rollover.NONE ? null : this.type;
+		} else {
+			this.index = sd.index();
+		}
+		if (suggestIndexes.isEmpty()) {
+			this.suggestField = null;
+			this.suggestIndexes = null;
+		} else {
+			this.suggestField = this.type + "_suggest";
+			if (fields.containsKey(this.suggestField)) {
+				throw new IllegalArgumentException("Field " + clazz.getName() + "." + this.suggestField
+						+ " conflicts with completion field of suggest.");
+			}
+			this.suggestIndexes = suggestIndexes.stream().mapToInt(Integer::intValue).toArray();
+			mapping.put(this.suggestField, of("type", "completion"));
+		}
 	}
 
-	<K, V> Map<K, V> of(K key, V value) {
-		return Collections.singletonMap(key, value);
+	/**
+	 * Routing field must be filterable by term, so search with routing can
+	 * also filter documents of other keys in the same shard.
+	 */
+	static boolean isRoutingType(Class<?> type, SearchableField sf) {
+		if (type == String.class) {
+			return sf.keyword() && sf.index();
+		}
+		return sf.index() && (type == int.class || type == Integer.class || type == long.class || type == Long.class);
 	}
 
-	<K, V> Map<K, V> of(K key1, V value1, K key2, V value2) {
-		Map<K, V> map = new HashMap<>();
-		map.put(key1, value1);
-		map.put(key2, value2);
+	/**
+	 * Create mapping of a field. Options equal to ES defaults are omitted.
+	 */
+	Map<String, Object> createFieldMapping(Field f, SearchableField sf, String fieldType) {
+		boolean isString = "text".equals(fieldType) || "keyword".equals(fieldType);
+		Map<String, Object> map = new HashMap<>();
+		map.put("type", fieldType);
+		map.put("boost", sf.boost());
+		if (!sf.index()) {
+			map.put("index", false);
+		}
+		if (!sf.docValues() && !"text".equals(fieldType)) {
+			map.put("doc_values", false);
+		}
+		if (!sf.norms() && "text".equals(fieldType)) {
+			map.put("norms", false);
+		}
+		if (sf.indexOptions() != SearchableField.IndexOptions.DEFAULT) {
+			if (!isString) {
+				throw new IllegalArgumentException("Field " + this.clazz.getName() + "." + f.getName()
+						+ " cannot set indexOptions since it is not a text or keyword field.");
+			}
+			if (sf.indexOptions().ordinal() > SearchableField.IndexOptions.FREQS.ordinal()
+					&& "keyword".equals(fieldType)) {
+				throw new IllegalArgumentException("Field " + this.clazz.getName() + "." + f.getName()
+						+ " cannot index positions or offsets since it is a keyword field.");
+			}
+			map.put("index_options", sf.indexOptions().name().toLowerCase());
+		}
+		if (!sf.analyzer().isEmpty() || !sf.searchAnalyzer().isEmpty()) {
+			if (!"text".equals(fieldType)) {
+				throw new IllegalArgumentException("Field " + this.clazz.getName() + "." + f.getName()
+						+ " cannot set analyzer since it is not a text field.");
+			}
+			if (!sf.analyzer().isEmpty()) {
+				map.put("analyzer", sf.analyzer());
+			}
+			if (!sf.searchAnalyzer().isEmpty()) {
+				map.put("search_analyzer", sf.searchAnalyzer());
+			} else if (SearchableField.EDGE_NGRAM.equals(sf.analyzer())) {
+				map.put("search_analyzer", Analyzers.EDGE_NGRAM_SEARCH);
+			}
+			if (SearchableField.CJK_BIGRAM.equals(sf.analyzer())) {
+				// bigrams never match a single character, so index
+				// characters in a subfield:
+				Map<String, Object> unigram = new HashMap<>();
+				unigram.put("type", "text");
+				unigram.put("analyzer", Analyzers.CJK_UNIGRAM);
+				map.put("fields", Collections.singletonMap(UNIGRAM_FIELD, unigram));
+			}
+		}
+		if (sf.store()) {
+			map.put("store", true);
+		}
 		return map;
 	}
 
+	<K, V> Map<K, V> of(K key, V value) {
+		return Collections.singletonMap(key, value);
+	}
+
 	public String getType() {
 		return type;
 	}
 
+	boolean isRolling() {
+		return rollover != SearchableDocument.Rollover.NONE;
+	}
+
 	public String getSource() {
-		Map<String, Object> map = of("properties", this.mapping);
+		return getSource(true);
+	}
+
+	/**
+	 * Check if the _all field is enabled by mapping source read from index.
+	 * 
+	 * @param source
+	 *            Mapping source of type as map.
+	 * @return False if _all is disabled.
+	 */
+	static boolean isAllEnabled(Map<String, Object> source) {
+		Object all = source.get("_all");
+		if (all instanceof Map) {
+			return !"false".equals(String.valueOf(((Map<?, ?>) all).get("enabled")));
+		}
+		return true;
+	}
+
+	/**
+	 * Get mapping source as JSON.
+	 * 
+	 * @param allEnabled
+	 *            False to disable the _all field.
+	 * @return JSON string.
+	 */
+	public String getSource(boolean allEnabled) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("properties", this.mapping);
+		if (!allEnabled) {
+			map.put("_all", of("enabled", false));
+		}
+		if (routingField != null) {
+			// reject index, get and delete without routing:
+			map.put("_routing", of("required", true));
+		}
 		return JsonUtil.toJson(map);
 	}
 
@@ -98,40 +355,195 @@ public class Mapping {
 	 * @return Id as string.
 	 */
 	public String getId(Object bean) {
-		try {
-			return this.id.get(bean).toString();
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException(e);
+		return accessor.getId(bean);
+	}
+
+	/**
+	 * Get routing of bean.
+	 * 
+	 * @param bean
+	 *            Target java bean.
+	 * @return Routing as string, or null if documents are not routed.
+	 */
+	public String getRouting(Object bean) {
+		if (routingField == null) {
+			return null;
 		}
+		Object value = accessor.get(bean, routingIndex);
+		if (value == null) {
+			throw new IllegalArgumentException("Routing field " + routingField + " cannot be null.");
+		}
+		return value.toString();
+	}
+
+	boolean isRouted() {
+		return routingField != null;
 	}
 
 	public Map<String, Object> getSource(Object bean) {
-		try {
-			Map<String, Object> map = new HashMap<>();
-			for (Map.Entry<String, Field> entry : this.fields.entrySet()) {
-				map.put(entry.getKey(), entry.getValue().get(bean));
+		Map<String, Object> map = new HashMap<>();
+		Object[] values = accessor.getAll(bean);
+		for (int i = 0; i < names.length; i++) {
+			map.put(names[i], values[i]);
+		}
+		if (suggestField != null) {
+			List<String> inputs = getSuggestInputs(bean);
+			if (!inputs.isEmpty()) {
+				map.put(suggestField, of("input", inputs));
 			}
-			return map;
-		} catch (IllegalAccessException e) {
+		}
+		return map;
+	}
+
+	/**
+	 * Get non-empty values of suggest fields.
+	 */
+	List<String> getSuggestInputs(Object bean) {
+		List<String> inputs = new ArrayList<>(suggestIndexes.length);
+		for (int index : suggestIndexes) {
+			String value = (String) accessor.get(bean, index);
+			if (value != null && !value.isEmpty()) {
+				inputs.add(value);
+			}
+		}
+		return inputs;
+	}
+
+	/**
+	 * Serialize a bean as JSON source directly, without building a map.
+	 * 
+	 * @param bean
+	 *            Target java bean.
+	 * @return JSON source as bytes.
+	 */
+	public BytesReference getSourceAsBytes(Object bean) {
+		BytesStreamOutput buffer = sourceBuffer.get();
+		buffer.reset();
+		try {
+			XContentBuilder builder = new XContentBuilder(JsonXContent.jsonXContent, buffer);
+			writeSource(bean, builder);
+			builder.flush();
+		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		// copy out since the request keeps the bytes after buffer is reused:
+		return new BytesArray(BytesRef.deepCopyOf(buffer.bytes().toBytesRef()));
+	}
+
+	/**
+	 * Write a bean as JSON object to builder.
+	 * 
+	 * @param bean
+	 *            Target java bean.
+	 * @param builder
+	 *            The XContentBuilder.
+	 */
+	public void writeSource(Object bean, XContentBuilder builder) throws IOException {
+		builder.startObject();
+		for (int i = 0; i < names.length; i++) {
+			accessor.write(bean, i, names[i], builder);
+		}
+		if (suggestField != null) {
+			List<String> inputs = getSuggestInputs(bean);
+			if (!inputs.isEmpty()) {
+				builder.startObject(suggestField).field("input", inputs).endObject();
+			}
+		}
+		builder.endObject();
+	}
+
+	/**
+	 * Get annotation of a searchable field.
+	 * 
+	 * @param name
+	 *            Field name.
+	 * @return SearchableField annotation.
+	 */
+	SearchableField getSearchableField(String name) {
+		return this.fields.get(names[indexOf(name)]).getAnnotation(SearchableField.class);
+	}
+
+	/**
+	 * Get ES type of a searchable field, e.g. "text", "keyword" or "long".
+	 * 
+	 * @param name
+	 *            Field name.
+	 * @return ES type.
+	 */
+	String getEsType(String name) {
+		return (String) this.mapping.get(names[indexOf(name)]).get("type");
+	}
+
+	/**
+	 * Get Java type of a searchable field.
+	 * 
+	 * @param name
+	 *            Field name.
+	 * @return Field type.
+	 */
+	Class<?> getFieldType(String name) {
+		return this.fields.get(names[indexOf(name)]).getType();
+	}
+
+	/**
+	 * Get indexes of projected fields.
+	 * 
+	 * @param fields
+	 *            Field names. Empty to include all fields.
+	 * @return Indexes of fields, or null if all fields are included.
+	 */
+	int[] project(String... fields) {
+		if (fields == null || fields.length == 0) {
+			return null;
+		}
+		int[] indexes = new int[fields.length];
+		for (int n = 0; n < fields.length; n++) {
+			indexes[n] = indexOf(fields[n]);
+		}
+		return indexes;
+	}
+
+	int indexOf(String field) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(field)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException(
+				"Field " + field + " is not a @SearchableField of class " + this.clazz.getName() + ".");
 	}
 
 	public <T> T createBean(String idValue, Map<String, Object> props) {
-		try {
-			@SuppressWarnings("unchecked")
-			T bean = (T) clazz.newInstance();
-			for (Map.Entry<String, Field> entry : this.fields.entrySet()) {
-				String name = entry.getKey();
-				Object value = props.get(name);
-				Field field = entry.getValue();
-				field.set(bean, value);
+		return createBean(idValue, props, null);
+	}
+
+	/**
+	 * Create bean with only projected fields populated.
+	 * 
+	 * @param idValue
+	 *            Id value.
+	 * @param props
+	 *            Source as map.
+	 * @param indexes
+	 *            Indexes returned by project(), or null for all fields.
+	 * @return Java bean.
+	 */
+	<T> T createBean(String idValue, Map<String, Object> props, int[] indexes) {
+		@SuppressWarnings("unchecked")
+		T bean = (T) accessor.newInstance();
+		if (indexes == null) {
+			Object[] values = new Object[names.length];
+			for (int i = 0; i < names.length; i++) {
+				values[i] = props.get(names[i]);
+			}
+			accessor.setAll(bean, values);
+		} else {
+			for (int i : indexes) {
+				accessor.set(bean, i, props.get(names[i]));
 			}
-			this.id.set(bean, idValue);
-			return bean;
-		} catch (IllegalAccessException | InstantiationException e) {
-			throw new RuntimeException(e);
 		}
+		accessor.setId(bean, idValue);
+		return bean;
 	}
 
 }
@@ -0,0 +1,76 @@
+package com.itranswarp.search;
+
+/**
+ * Receive metrics of requests sent by SearchableClient. Methods are called on
+ * transport or executor threads, so they must be thread-safe and fast.
+ * 
+ * Set a listener by SearchableClient.setMetricsListener(), e.g. a
+ * HistogramMetrics.
+ */
+public interface MetricsListener {
+
+	enum Operation {
+		SEARCH, MULTI_SEARCH, SCROLL, SUGGEST, GET, MULTI_GET, INDEX, UNINDEX, BULK
+	}
+
+	/**
+	 * Called when a request is completed. Total latency is the sum of the
+	 * three parts.
+	 * 
+	 * @param operation
+	 *            Operation of request.
+	 * @param type
+	 *            Document type, or null if request has several types.
+	 * @param networkNanos
+	 *            Round trip time except took time, including transport and
+	 *            queueing on both sides.
+	 * @param tookNanos
+	 *            Time reported by ES as took, or 0 if response has no took.
+	 * @param hydrateNanos
+	 *            Time to convert response to beans.
+	 */
+	default void onRequest(Operation operation, String type, long networkNanos, long tookNanos, long hydrateNanos) {
+	}
+
+	/**
+	 * Called when a request failed.
+	 * 
+	 * @param operation
+	 *            Operation of request.
+	 * @param type
+	 *            Document type, or null if request has several types.
+	 * @param cause
+	 *            The failure cause.
+	 */
+	default void onError(Operation operation, String type, Throwable cause) {
+	}
+
+	/**
+	 * Called for each search response. Hits under min score are dropped by ES
+	 * and not counted as total hits.
+	 * 
+	 * @param type
+	 *            Document type.
+	 * @param totalHits
+	 *            Number of hits matched with score at least min score.
+	 * @param transferredHits
+	 *            Number of hits transferred in response.
+	 */
+	default void onHits(String type, long totalHits, int transferredHits) {
+	}
+
+	/**
+	 * Called when a bulk request of BulkIndexer is completed.
+	 * 
+	 * @param actions
+	 *            Number of actions in the bulk request.
+	 * @param failed
+	 *            Number of failed actions.
+	 * @param inFlightRequests
+	 *            Number of bulk requests sent but not yet completed, at most
+	 *            the concurrent requests of the bulk indexer. Documents
+	 *            buffered but not yet sent are not counted.
+	 */
+	default void onBulk(int actions, int failed, int inFlightRequests) {
+	}
+}
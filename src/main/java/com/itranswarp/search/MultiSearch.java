@@ -0,0 +1,173 @@
+package com.itranswarp.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.client.Client;
+
+import com.itranswarp.search.MetricsListener.Operation;
+
+/**
+ * Batch of queries sent as one ES multi search, created by
+ * SearchableClient.multiSearch(). Each added query gets its own future, which
+ * is completed with SearchResults or with the failure of that query only.
+ * 
+ * <code>
+ * MultiSearch ms = client.multiSearch();
+ * CompletableFuture&lt;SearchResults&lt;Tweet&gt;&gt; tweets = ms.add(Tweet.class, "trump");
+ * CompletableFuture&lt;SearchResults&lt;User&gt;&gt; users = ms.add(client.query(User.class).text("trump").size(5));
+ * ms.execute();
+ * </code>
+ */
+public class MultiSearch {
+
+	final SearchableClient searchableClient;
+	final Client client;
+	final List<Entry<?>> entries = new ArrayList<>();
+	boolean executed = false;
+
+	MultiSearch(SearchableClient searchableClient, Client client) {
+		this.searchableClient = searchableClient;
+		this.client = client;
+	}
+
+	/**
+	 * Add a search of words. Any word can match.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @return Future of SearchResults, completed after execute.
+	 */
+	public <T> CompletableFuture<SearchResults<T>> add(Class<T> clazz, String words) {
+		return add(searchableClient.query(clazz).text(words));
+	}
+
+	/**
+	 * Add a query.
+	 * 
+	 * @param query
+	 *            Query created by the same client.
+	 * @return Future of SearchResults, completed after execute.
+	 */
+	public <T> CompletableFuture<SearchResults<T>> add(SearchQuery<T> query) {
+		if (executed) {
+			throw new IllegalStateException("MultiSearch is already executed.");
+		}
+		if (query.client != searchableClient) {
+			throw new IllegalArgumentException("Query is created by another client.");
+		}
+		Entry<T> entry = new Entry<>(query);
+		entries.add(entry);
+		return entry.future;
+	}
+
+	/**
+	 * Number of queries added.
+	 * 
+	 * @return Number of queries.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Execute all queries in one request and wait for the response. Failure of
+	 * a single query does not throw, but completes its future exceptionally.
+	 */
+	public void execute() {
+		MultiSearchRequestBuilder msrb = prepare();
+		if (msrb == null) {
+			return;
+		}
+		MultiSearchResponse response;
+		try {
+			response = searchableClient.call(Operation.MULTI_SEARCH, null, msrb, Function.identity());
+		} catch (RuntimeException e) {
+			failAll(e);
+			throw e;
+		}
+		complete(response);
+	}
+
+	/**
+	 * Execute all queries in one request without blocking the caller thread.
+	 * 
+	 * @return CompletableFuture completed after futures of all queries are
+	 *         completed.
+	 */
+	public CompletableFuture<Void> executeAsync() {
+		MultiSearchRequestBuilder msrb = prepare();
+		if (msrb == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return searchableClient.execute(Operation.MULTI_SEARCH, null, msrb, (response) -> {
+			complete(response);
+			return (Void) null;
+		}).whenComplete((r, e) -> {
+			if (e != null) {
+				failAll(e);
+			}
+		});
+	}
+
+	MultiSearchRequestBuilder prepare() {
+		if (executed) {
+			throw new IllegalStateException("MultiSearch is already executed.");
+		}
+		executed = true;
+		if (entries.isEmpty()) {
+			return null;
+		}
+		MultiSearchRequestBuilder msrb = client.prepareMultiSearch();
+		for (Entry<?> entry : entries) {
+			msrb.add(entry.query.prepareSearch());
+		}
+		return msrb;
+	}
+
+	void complete(MultiSearchResponse response) {
+		MultiSearchResponse.Item[] items = response.getResponses();
+		for (int i = 0; i < entries.size(); i++) {
+			Entry<?> entry = entries.get(i);
+			if (i >= items.length) {
+				entry.future.completeExceptionally(new RuntimeException("No response for query at " + i + "."));
+			} else if (items[i].isFailure()) {
+				entry.future.completeExceptionally(items[i].getFailure());
+			} else {
+				entry.complete(items[i]);
+			}
+		}
+	}
+
+	void failAll(Throwable e) {
+		for (Entry<?> entry : entries) {
+			entry.future.completeExceptionally(e);
+		}
+	}
+
+	class Entry<T> {
+
+		final SearchQuery<T> query;
+		final int[] projection;
+		final CompletableFuture<SearchResults<T>> future = new CompletableFuture<>();
+
+		Entry(SearchQuery<T> query) {
+			this.query = query;
+			this.projection = query.mapping.project(query.fields);
+		}
+
+		void complete(MultiSearchResponse.Item item) {
+			try {
+				future.complete(searchableClient.toSearchResults(query.mapping, item.getResponse(), projection));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.itranswarp.search;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Access bean by Field.get / Field.set.
+ */
+class ReflectionBeanAccessor extends BeanAccessor {
+
+	ReflectionBeanAccessor(Class<?> clazz, Field id, Field[] fields) {
+		super(clazz, id, fields);
+	}
+
+	@Override
+	Object newInstance() {
+		try {
+			return clazz.newInstance();
+		} catch (IllegalAccessException | InstantiationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	String getId(Object bean) {
+		try {
+			return id.get(bean).toString();
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	void setId(Object bean, String value) {
+		try {
+			id.set(bean, value);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	Object get(Object bean, int index) {
+		try {
+			return fields[index].get(bean);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	void set(Object bean, int index, Object value) {
+		Field f = fields[index];
+		if (value == null && f.getType().isPrimitive()) {
+			return;
+		}
+		try {
+			f.set(bean, convert(f.getType(), value));
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	void write(Object bean, int index, String name, XContentBuilder builder) throws IOException {
+		Field f = fields[index];
+		try {
+			switch (kinds[index]) {
+			case KIND_STRING:
+				builder.field(name, (String) f.get(bean));
+				break;
+			case KIND_INT:
+				builder.field(name, f.getInt(bean));
+				break;
+			case KIND_LONG:
+				builder.field(name, f.getLong(bean));
+				break;
+			case KIND_BOOLEAN:
+				builder.field(name, f.getBoolean(bean));
+				break;
+			case KIND_FLOAT:
+				builder.field(name, f.getFloat(bean));
+				break;
+			case KIND_DOUBLE:
+				builder.field(name, f.getDouble(bean));
+				break;
+			default:
+				builder.field(name, f.get(bean));
+			}
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.itranswarp.search;
+
+/**
+ * Progress of a running or completed reindex.
+ */
+public class ReindexProgress {
+
+	/**
+	 * Name of the new index.
+	 */
+	public final String index;
+
+	/**
+	 * Number of documents sent to the new index.
+	 */
+	public final long sent;
+
+	public final long succeeded;
+
+	public final long failed;
+
+	/**
+	 * Milliseconds since the reindex started.
+	 */
+	public final long elapsed;
+
+	/**
+	 * Average number of documents indexed per second.
+	 */
+	public final double docsPerSecond;
+
+	/**
+	 * True if all documents are sent and all bulk requests are completed.
+	 */
+	public final boolean done;
+
+	public ReindexProgress(String index, long sent, long succeeded, long failed, long elapsed, boolean done) {
+		this.index = index;
+		this.sent = sent;
+		this.succeeded = succeeded;
+		this.failed = failed;
+		this.elapsed = elapsed;
+		this.docsPerSecond = elapsed == 0 ? 0 : succeeded * 1000.0 / elapsed;
+		this.done = done;
+	}
+
+	@Override
+	public String toString() {
+		return "ReindexProgress(" + index + ": sent=" + sent + ", succeeded=" + succeeded + ", failed=" + failed
+				+ ", elapsed=" + elapsed + "ms, docsPerSecond=" + String.format("%.1f", docsPerSecond) + ", done="
+				+ done + ")";
+	}
+}
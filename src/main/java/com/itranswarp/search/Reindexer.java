@@ -0,0 +1,457 @@
+package com.itranswarp.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.mapper.RoutingFieldMapper;
+import org.elasticsearch.index.shard.IndexingStats;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+
+/**
+ * Rebuild an index without downtime of search. Documents are written to a new
+ * versioned index, e.g. "default-v1479000000000", and the alias with the old
+ * index name is moved to it in one request when all documents are indexed.
+ * 
+ * Documents of a type are read from the Stream or Iterator set by source(),
+ * or copied from the old index by sliced scroll if no source is set, which
+ * re-analyzes the stored _source with the new mapping. Documents written to
+ * the old index while reindexing would be lost, so run() fails without moving
+ * the alias if the old index is written in the meantime. Stop writes, or run
+ * again, when it fails.
+ * 
+ * Obtain a reindexer by SearchableClient.createReindexer().
+ */
+public class Reindexer {
+
+	static final String REFRESH_INTERVAL = "index.refresh_interval";
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final SearchableClient searchableClient;
+	private final Client client;
+	private final String alias;
+	private final List<Mapping> mappings;
+	private final int scrollSize;
+	private final long scrollKeepAlive;
+	private final int bulkActions;
+	private final long bulkSizeInBytes;
+
+	private final Map<Mapping, Stream<?>> sources = new LinkedHashMap<>();
+
+	int workers = 4;
+	int maxDocsPerSecond = 0;
+	long progressInterval = 10000;
+	boolean keepOldIndex = false;
+	Consumer<ReindexProgress> progressListener = null;
+
+	boolean started = false;
+	String newIndex = null;
+	volatile BulkIndexer indexer = null;
+	long startTime = 0;
+	final AtomicLong sent = new AtomicLong();
+	final AtomicLong lastReport = new AtomicLong();
+
+	Reindexer(SearchableClient searchableClient, Client client, String alias, List<Mapping> mappings, int scrollSize,
+			long scrollKeepAlive, int bulkActions, long bulkSizeInBytes) {
+		this.searchableClient = searchableClient;
+		this.client = client;
+		this.alias = alias;
+		this.mappings = mappings;
+		this.scrollSize = scrollSize;
+		this.scrollKeepAlive = scrollKeepAlive;
+		this.bulkActions = bulkActions;
+		this.bulkSizeInBytes = bulkSizeInBytes;
+	}
+
+	/**
+	 * Read documents of type from stream instead of the old index. A parallel
+	 * stream is consumed by multiple threads.
+	 * 
+	 * @param clazz
+	 *            Class of document in the same index.
+	 * @param beans
+	 *            Stream of all documents of type.
+	 * @return This reindexer.
+	 */
+	public <T> Reindexer source(Class<T> clazz, Stream<? extends T> beans) {
+		Mapping mapping = searchableClient.getMappingFromClass(clazz);
+		if (!mappings.contains(mapping)) {
+			throw new IllegalArgumentException("Class " + clazz.getName() + " is not in index " + alias + ".");
+		}
+		sources.put(mapping, beans);
+		return this;
+	}
+
+	/**
+	 * Read documents of type from iterator instead of the old index.
+	 * 
+	 * @param clazz
+	 *            Class of document in the same index.
+	 * @param beans
+	 *            Iterator of all documents of type.
+	 * @return This reindexer.
+	 */
+	public <T> Reindexer source(Class<T> clazz, Iterator<? extends T> beans) {
+		Spliterator<? extends T> spliterator = Spliterators.spliteratorUnknownSize(beans, Spliterator.ORDERED);
+		return source(clazz, StreamSupport.stream(spliterator, false));
+	}
+
+	/**
+	 * Set number of concurrent bulk requests, which is also the number of
+	 * slices when copying from the old index.
+	 * 
+	 * @param workers
+	 *            Number of workers, default to 4.
+	 * @return This reindexer.
+	 */
+	public Reindexer workers(int workers) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("Workers must be at least 1.");
+		}
+		this.workers = workers;
+		return this;
+	}
+
+	/**
+	 * Limit indexing rate so that the cluster can still serve searches.
+	 * 
+	 * @param maxDocsPerSecond
+	 *            Max documents sent per second. Default to 0 for unlimited.
+	 * @return This reindexer.
+	 */
+	public Reindexer maxDocsPerSecond(int maxDocsPerSecond) {
+		if (maxDocsPerSecond < 0) {
+			throw new IllegalArgumentException("Max docs per second cannot be negative.");
+		}
+		this.maxDocsPerSecond = maxDocsPerSecond;
+		return this;
+	}
+
+	/**
+	 * Receive progress periodically while reindexing, and once more when done.
+	 * 
+	 * @param progressInterval
+	 *            Interval in milliseconds, default to 10000.
+	 * @param progressListener
+	 *            Listener called by indexing threads.
+	 * @return This reindexer.
+	 */
+	public Reindexer progress(long progressInterval, Consumer<ReindexProgress> progressListener) {
+		this.progressInterval = progressInterval;
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	/**
+	 * Keep old index after the alias is moved, e.g. to roll back by moving the
+	 * alias back. An index created before the alias was used has the same
+	 * name as the alias and cannot be kept, so run() fails if it is set.
+	 * 
+	 * @param keepOldIndex
+	 *            True to keep old index. Default to false.
+	 * @return This reindexer.
+	 */
+	public Reindexer keepOldIndex(boolean keepOldIndex) {
+		this.keepOldIndex = keepOldIndex;
+		return this;
+	}
+
+	/**
+	 * Get current progress.
+	 * 
+	 * @return ReindexProgress, or null if not started.
+	 */
+	public ReindexProgress getProgress() {
+		return indexer == null ? null : progress(false);
+	}
+
+	/**
+	 * Run reindex and move the alias to the new index. The old index keeps
+	 * serving searches until the alias is moved. If any document failed, the
+	 * new index is deleted and the alias is not changed.
+	 * 
+	 * @return Final progress.
+	 */
+	public ReindexProgress run() {
+		if (started) {
+			throw new IllegalStateException("Reindexer can only run once.");
+		}
+		started = true;
+		IndicesAdminClient idc = client.admin().indices();
+		boolean oldExists = idc.prepareExists(alias).get().isExists();
+		if (keepOldIndex && oldExists && !idc.prepareAliasesExist(alias).get().exists()) {
+			throw new IllegalArgumentException(
+					"Cannot keep old index " + alias + " since it has the same name as the alias.");
+		}
+		String refreshInterval = oldExists ? getRefreshInterval() : null;
+		newIndex = alias + "-v" + System.currentTimeMillis();
+		// refresh is useless until the index is searched:
+		CreateIndexRequest request = searchableClient.newIndexRequest(newIndex,
+				Collections.singletonMap(REFRESH_INTERVAL, "-1"));
+		for (Mapping mapping : mappings) {
+			// keep _all disabled if disabled by createMapping():
+			boolean allEnabled = !oldExists || searchableClient.isAllEnabled(alias, mapping);
+			request.mapping(mapping.getType(), mapping.getSource(allEnabled));
+		}
+		if (!idc.create(request).actionGet().isAcknowledged()) {
+			throw new RuntimeException("Failed to create index " + newIndex + ".");
+		}
+		log.info("Reindex " + alias + " to " + newIndex + "...");
+		startTime = System.currentTimeMillis();
+		lastReport.set(startTime);
+		indexer = new BulkIndexer(searchableClient, client, bulkActions, bulkSizeInBytes, 0, workers, null);
+		long writes = oldExists ? countWrites() : 0;
+		try {
+			List<String> types = new ArrayList<>();
+			for (Mapping mapping : mappings) {
+				if (!sources.containsKey(mapping)) {
+					types.add(mapping.getType());
+				}
+			}
+			if (oldExists && !types.isEmpty()) {
+				copy(types.toArray(new String[types.size()]));
+			}
+			for (Map.Entry<Mapping, Stream<?>> e : sources.entrySet()) {
+				Mapping mapping = e.getKey();
+				e.getValue().forEach((bean) -> {
+					add(new IndexRequest(newIndex, mapping.getType(), mapping.getId(bean))
+							.routing(mapping.getRouting(bean)).source(mapping.getSourceAsBytes(bean)));
+				});
+			}
+		} catch (RuntimeException e) {
+			indexer.close();
+			deleteNewIndex();
+			throw e;
+		}
+		boolean completed = indexer.awaitClose();
+		ReindexProgress result = progress(true);
+		report(result);
+		String error = checkResult(completed, result);
+		if (error != null) {
+			deleteNewIndex();
+			throw new RuntimeException("Reindex failed: " + error + " Alias " + alias + " is not changed.");
+		}
+		if (oldExists && countWrites() != writes) {
+			deleteNewIndex();
+			throw new RuntimeException(
+					"Reindex failed: index " + alias + " was written while reindexing. Alias " + alias
+							+ " is not changed.");
+		}
+		// restore refresh interval of old index, or reset to default:
+		Settings.Builder settings = Settings.builder();
+		if (refreshInterval == null) {
+			settings.putNull(REFRESH_INTERVAL);
+		} else {
+			settings.put(REFRESH_INTERVAL, refreshInterval);
+		}
+		idc.prepareUpdateSettings(newIndex).setSettings(settings).get();
+		idc.prepareRefresh(newIndex).get();
+		moveAlias();
+		for (Mapping mapping : mappings) {
+			searchableClient.invalidateCache(mapping);
+		}
+		log.info("Reindex completed: " + result);
+		return result;
+	}
+
+	/**
+	 * Check if all documents are indexed, since the alias cannot be moved to an
+	 * incomplete index.
+	 * 
+	 * @param completed
+	 *            True if all bulk requests completed.
+	 * @param result
+	 *            Final progress.
+	 * @return Error message, or null if all documents succeeded.
+	 */
+	String checkResult(boolean completed, ReindexProgress result) {
+		if (result.failed > 0) {
+			return result.failed + " documents failed.";
+		}
+		if (result.succeeded < result.sent) {
+			return (result.sent - result.succeeded) + " of " + result.sent + " documents are not completed.";
+		}
+		if (!completed) {
+			return "Bulk requests are not completed.";
+		}
+		return null;
+	}
+
+	/**
+	 * Get refresh interval of old index, or null if not set.
+	 */
+	String getRefreshInterval() {
+		GetSettingsResponse gsr = client.admin().indices().prepareGetSettings(alias).setNames(REFRESH_INTERVAL)
+				.get();
+		for (ObjectObjectCursor<String, Settings> cursor : gsr.getIndexToSettings()) {
+			String value = cursor.value.get(REFRESH_INTERVAL);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Count index and delete operations on primaries of old index, which
+	 * changes if old index is written.
+	 */
+	long countWrites() {
+		IndexingStats.Stats stats = client.admin().indices().prepareStats(alias).clear().setIndexing(true).get()
+				.getPrimaries().getIndexing().getTotal();
+		return stats.getIndexCount() + stats.getDeleteCount();
+	}
+
+	/**
+	 * Copy documents of types from old index by sliced scroll, one slice per
+	 * worker.
+	 */
+	void copy(String[] types) {
+		if (workers == 1) {
+			copySlice(types, null);
+			return;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < workers; i++) {
+				SliceBuilder slice = new SliceBuilder(i, workers);
+				futures.add(CompletableFuture.runAsync(() -> copySlice(types, slice), pool));
+			}
+			for (CompletableFuture<Void> future : futures) {
+				SearchableClient.await(future);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	void copySlice(String[] types, SliceBuilder slice) {
+		TimeValue keepAlive = TimeValue.timeValueMillis(scrollKeepAlive);
+		SearchRequestBuilder srb = client.prepareSearch(alias).setTypes(types).setSize(scrollSize).setScroll(keepAlive)
+				.addSort("_doc", SortOrder.ASC);
+		if (slice != null) {
+			srb.slice(slice);
+		}
+		SearchResponse sr = srb.get();
+		try {
+			while (sr.getHits().getHits().length > 0) {
+				for (SearchHit hit : sr.getHits().getHits()) {
+					SearchHitField routing = hit.field(RoutingFieldMapper.NAME);
+					add(new IndexRequest(newIndex, hit.getType(), hit.getId())
+							.routing(routing == null ? null : routing.getValue()).source(hit.getSourceRef()));
+				}
+				sr = client.prepareSearchScroll(sr.getScrollId()).setScroll(keepAlive).get();
+			}
+		} finally {
+			client.prepareClearScroll().addScrollId(sr.getScrollId()).get();
+		}
+	}
+
+	void add(IndexRequest request) {
+		throttle(sent.incrementAndGet());
+		indexer.add(request);
+		long now = System.currentTimeMillis();
+		long last = lastReport.get();
+		if (now - last >= progressInterval && lastReport.compareAndSet(last, now)) {
+			report(progress(false));
+		}
+	}
+
+	/**
+	 * Sleep until the n-th document is allowed by maxDocsPerSecond.
+	 */
+	void throttle(long n) {
+		if (maxDocsPerSecond == 0) {
+			return;
+		}
+		long wait = startTime + n * 1000 / maxDocsPerSecond - System.currentTimeMillis();
+		if (wait > 0) {
+			try {
+				Thread.sleep(wait);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Reindex is interrupted.", e);
+			}
+		}
+	}
+
+	ReindexProgress progress(boolean done) {
+		return new ReindexProgress(newIndex, sent.get(), indexer.getSucceeded(), indexer.getFailed(),
+				System.currentTimeMillis() - startTime, done);
+	}
+
+	void report(ReindexProgress progress) {
+		log.info(progress);
+		if (progressListener != null) {
+			progressListener.accept(progress);
+		}
+	}
+
+	/**
+	 * Move alias to new index, and remove old indices, in one request so that
+	 * searches always see a complete index.
+	 */
+	void moveAlias() {
+		IndicesAdminClient idc = client.admin().indices();
+		IndicesAliasesRequestBuilder iarb = idc.prepareAliases().addAlias(newIndex, alias);
+		boolean isAlias = false;
+		GetAliasesResponse gar = idc.prepareGetAliases(alias).get();
+		for (ObjectObjectCursor<String, List<AliasMetaData>> cursor : gar.getAliases()) {
+			if (cursor.value.isEmpty()) {
+				continue;
+			}
+			isAlias = true;
+			if (keepOldIndex) {
+				iarb.removeAlias(cursor.key, alias);
+			} else {
+				iarb.removeIndex(cursor.key);
+			}
+		}
+		if (!isAlias && idc.prepareExists(alias).get().isExists()) {
+			// index has the name of alias:
+			iarb.removeIndex(alias);
+		}
+		if (!iarb.get().isAcknowledged()) {
+			throw new RuntimeException("Failed to move alias " + alias + " to index " + newIndex + ".");
+		}
+		log.info("Alias " + alias + " is moved to index " + newIndex + ".");
+	}
+
+	void deleteNewIndex() {
+		log.warn("Delete index " + newIndex + " since reindex failed.");
+		client.admin().indices().prepareDelete(newIndex).get();
+	}
+}
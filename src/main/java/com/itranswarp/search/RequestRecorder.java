@@ -0,0 +1,162 @@
+package com.itranswarp.search;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.elasticsearch.search.profile.SearchProfileShardResults;
+
+import com.itranswarp.search.MetricsListener.Operation;
+
+/**
+ * Report requests of SearchableClient to MetricsListener and slow searches to
+ * the slow query handler. Errors of the listener and the handler are logged so
+ * that requests do not fail.
+ */
+class RequestRecorder {
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private volatile MetricsListener metricsListener = null;
+	private long slowQueryThreshold = -1;
+	private boolean profileSearches = false;
+	private Consumer<SlowQuery> slowQueryHandler = null;
+
+	void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	void setSlowQueryThreshold(long slowQueryThreshold) {
+		this.slowQueryThreshold = slowQueryThreshold;
+	}
+
+	void setProfileSearches(boolean profileSearches) {
+		this.profileSearches = profileSearches;
+	}
+
+	void setSlowQueryHandler(Consumer<SlowQuery> slowQueryHandler) {
+		this.slowQueryHandler = slowQueryHandler;
+	}
+
+	/**
+	 * Report latency split into network, took and hydration time.
+	 * 
+	 * @param start
+	 *            Nano time when request is sent.
+	 * @param received
+	 *            Nano time when response is received.
+	 * @param converted
+	 *            Nano time when response is converted.
+	 */
+	void record(Operation operation, Mapping mapping, ActionResponse response, long start, long received,
+			long converted) {
+		MetricsListener listener = this.metricsListener;
+		if (listener == null) {
+			return;
+		}
+		String type = mapping == null ? null : mapping.getType();
+		long took = 0;
+		try {
+			if (response instanceof SearchResponse) {
+				SearchResponse sr = (SearchResponse) response;
+				took = TimeUnit.MILLISECONDS.toNanos(sr.getTookInMillis());
+				if (operation == Operation.SEARCH && type != null) {
+					listener.onHits(type, sr.getHits().getTotalHits(), sr.getHits().getHits().length);
+				}
+			} else if (response instanceof BulkResponse) {
+				took = TimeUnit.MILLISECONDS.toNanos(((BulkResponse) response).getTookInMillis());
+			}
+			long network = Math.max(0, received - start - took);
+			listener.onRequest(operation, type, network, Math.min(took, received - start), converted - received);
+		} catch (RuntimeException e) {
+			log.warn("Metrics listener failed.", e);
+		}
+	}
+
+	void onError(Operation operation, Mapping mapping, Throwable e) {
+		MetricsListener listener = this.metricsListener;
+		if (listener != null) {
+			try {
+				listener.onError(operation, mapping == null ? null : mapping.getType(), e);
+			} catch (RuntimeException le) {
+				log.warn("Metrics listener failed.", le);
+			}
+		}
+	}
+
+	void onBulk(int actions, int failed, int inFlightRequests) {
+		MetricsListener listener = this.metricsListener;
+		if (listener != null) {
+			try {
+				listener.onBulk(actions, failed, inFlightRequests);
+			} catch (RuntimeException e) {
+				log.warn("Metrics listener failed.", e);
+			}
+		}
+	}
+
+	/**
+	 * Enable profile of search if searches are profiled.
+	 */
+	void checkProfile(Operation operation, ActionRequestBuilder<?, ?, ?> builder) {
+		if (profileSearches && (operation == Operation.SEARCH || operation == Operation.SCROLL)
+				&& builder instanceof SearchRequestBuilder) {
+			((SearchRequestBuilder) builder).setProfile(true);
+		}
+	}
+
+	/**
+	 * Report search as SlowQuery if its response is not received within the
+	 * threshold. Called after the response is converted and recorded.
+	 * 
+	 * @param nanos
+	 *            Nano time between sending request and receiving response.
+	 */
+	void checkSlowQuery(Operation operation, Mapping mapping, String words, ActionRequest<?> request,
+			ActionResponse response, long nanos) {
+		long threshold = this.slowQueryThreshold;
+		if (threshold < 0 || (operation != Operation.SEARCH && operation != Operation.SCROLL)
+				|| !(request instanceof SearchRequest) || !(response instanceof SearchResponse)) {
+			return;
+		}
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(nanos);
+		if (elapsed < threshold) {
+			return;
+		}
+		try {
+			reportSlowQuery(mapping, words, (SearchRequest) request, (SearchResponse) response, elapsed);
+		} catch (RuntimeException e) {
+			log.warn("Failed to report slow query.", e);
+		}
+	}
+
+	/**
+	 * Pass SlowQuery to handler, or log it if no handler is set.
+	 */
+	void reportSlowQuery(Mapping mapping, String words, SearchRequest request, SearchResponse sr, long elapsed) {
+		Map<String, ProfileShardResult> profileResults = sr.getProfileResults();
+		String profile = profileResults == null || profileResults.isEmpty() ? null
+				: Strings.toString(new SearchProfileShardResults(profileResults));
+		SlowQuery slowQuery = new SlowQuery(mapping.getType(), words,
+				String.valueOf(request.source()), sr.getTookInMillis(), elapsed,
+				sr.getTotalShards(), sr.getSuccessfulShards(), sr.getFailedShards(), sr.getHits().getTotalHits(),
+				sr.getHits().getHits().length, profile);
+		Consumer<SlowQuery> handler = this.slowQueryHandler;
+		if (handler == null) {
+			log.warn(slowQuery);
+		} else {
+			handler.accept(slowQuery);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.itranswarp.search;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+import com.itranswarp.search.MetricsListener.Operation;
+
+/**
+ * Iterate all hits of a search by scroll. Hits are pulled in batches and beans
+ * are created one by one, so memory is bounded by the batch size.
+ * 
+ * The scroll is cleared when all hits are consumed or the iterator is closed.
+ * Each batch is recorded as a SCROLL request by the metrics listener.
+ */
+public class ScrollIterator<T> implements Iterator<T>, AutoCloseable {
+
+	private final SearchableClient searchableClient;
+	private final Client client;
+	private final Mapping mapping;
+	private final int[] projection;
+	private final TimeValue keepAlive;
+	private final long totalHits;
+
+	private String scrollId;
+	private SearchHit[] hits;
+	private int position = 0;
+	private boolean closed = false;
+
+	ScrollIterator(SearchableClient searchableClient, Client client, Mapping mapping, int[] projection,
+			TimeValue keepAlive, SearchResponse sr) {
+		this.searchableClient = searchableClient;
+		this.client = client;
+		this.mapping = mapping;
+		this.projection = projection;
+		this.keepAlive = keepAlive;
+		this.totalHits = sr.getHits().getTotalHits();
+		this.scrollId = sr.getScrollId();
+		this.hits = sr.getHits().getHits();
+	}
+
+	/**
+	 * Get total hits of the search.
+	 * 
+	 * @return Total hits.
+	 */
+	public long getTotalHits() {
+		return totalHits;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (position < hits.length) {
+			return true;
+		}
+		if (closed) {
+			return false;
+		}
+		SearchResponse sr = searchableClient.call(Operation.SCROLL, mapping,
+				client.prepareSearchScroll(scrollId).setScroll(keepAlive), Function.identity());
+		this.scrollId = sr.getScrollId();
+		this.hits = sr.getHits().getHits();
+		this.position = 0;
+		if (hits.length == 0) {
+			close();
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		SearchHit sh = hits[position];
+		// release hit as soon as bean is created:
+		hits[position] = null;
+		position++;
+		return mapping.createBean(sh.getId(), sh.getSource(), projection);
+	}
+
+	/**
+	 * Clear the scroll. Remaining hits are discarded.
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			hits = new SearchHit[0];
+			position = 0;
+			if (scrollId != null) {
+				client.prepareClearScroll().addScrollId(scrollId).get();
+				scrollId = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.itranswarp.search;
+
+/**
+ * Cache of search results. Set to SearchableClient by setSearchCache() to
+ * enable caching.
+ * 
+ * Implementations must be thread-safe. Cached results are shared by all
+ * callers and must not be modified.
+ */
+public interface SearchCache {
+
+	/**
+	 * Get cached results.
+	 * 
+	 * @param key
+	 *            Cache key.
+	 * @return SearchResults, or null if not cached or expired.
+	 */
+	SearchResults<?> get(SearchCacheKey key);
+
+	/**
+	 * Get current generation of a document type, which must change when the
+	 * type is invalidated. It is taken when a key misses, before the search
+	 * is sent, and passed to put() with the results.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @return Generation, or a negative number if results of a search started
+	 *         now must not be cached.
+	 */
+	long getGeneration(Class<?> clazz);
+
+	/**
+	 * Put results to cache. Results must be dropped if the generation of the
+	 * document type is no longer the given one, since the search may have run
+	 * before the write.
+	 * 
+	 * @param key
+	 *            Cache key.
+	 * @param results
+	 *            SearchResults.
+	 * @param generation
+	 *            Generation of document type got before the search.
+	 */
+	void put(SearchCacheKey key, SearchResults<?> results, long generation);
+
+	/**
+	 * Invalidate all cached results of a document type. Called after a
+	 * document of the type is indexed or unindexed.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 */
+	void invalidate(Class<?> clazz);
+
+	/**
+	 * Get statistics of cache.
+	 * 
+	 * @return SearchCacheStats.
+	 */
+	SearchCacheStats getStats();
+}
@@ -0,0 +1,99 @@
+package com.itranswarp.search;
+
+import java.util.Arrays;
+
+/**
+ * Immutable key of cached search results. Search words are normalized to the
+ * spans split by SplitUtil, so words differ only in separators share the same
+ * key. toString() returns a stable form which can be used as key of an
+ * external cache.
+ */
+public final class SearchCacheKey {
+
+	final Class<?> clazz;
+	final String spans;
+	final boolean isMust;
+	final float minScore;
+	final int size;
+	final String[] fields;
+	final int hash;
+
+	SearchCacheKey(Class<?> clazz, Span[] spans, boolean isMust, float minScore, int size, String[] fields) {
+		this.clazz = clazz;
+		this.spans = normalize(spans);
+		this.isMust = isMust;
+		this.minScore = minScore;
+		this.size = size;
+		this.fields = fields.clone();
+		int h = clazz.hashCode();
+		h = 31 * h + this.spans.hashCode();
+		h = 31 * h + (isMust ? 1 : 0);
+		h = 31 * h + Float.floatToIntBits(minScore);
+		h = 31 * h + size;
+		h = 31 * h + Arrays.hashCode(fields);
+		this.hash = h;
+	}
+
+	static String normalize(Span[] spans) {
+		StringBuilder sb = new StringBuilder(spans.length * 8);
+		for (Span span : spans) {
+			sb.append(span instanceof Word ? 'W' : 'P').append(span.text).append('\n');
+		}
+		return sb.toString();
+	}
+
+	public Class<?> getDocumentClass() {
+		return clazz;
+	}
+
+	/**
+	 * Get normalized spans, one span per line, prefixed by 'W' for word or 'P'
+	 * for phrase.
+	 * 
+	 * @return Normalized spans.
+	 */
+	public String getSpans() {
+		return spans;
+	}
+
+	public boolean isMust() {
+		return isMust;
+	}
+
+	public float getMinScore() {
+		return minScore;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public String[] getFields() {
+		return fields.clone();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof SearchCacheKey) {
+			SearchCacheKey k = (SearchCacheKey) o;
+			return this.hash == k.hash && this.clazz == k.clazz && this.spans.equals(k.spans)
+					&& this.isMust == k.isMust && Float.compare(this.minScore, k.minScore) == 0
+					&& this.size == k.size && Arrays.equals(this.fields, k.fields);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return clazz.getName() + "\n" + isMust + "\n" + minScore + "\n" + size + "\n" + String.join(",", fields)
+				+ "\n" + spans;
+	}
+}
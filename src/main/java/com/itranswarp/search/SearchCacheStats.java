@@ -0,0 +1,24 @@
+package com.itranswarp.search;
+
+public class SearchCacheStats {
+
+	public final long hits;
+
+	public final long misses;
+
+	/**
+	 * Number of entries removed because cache is full or entry is expired.
+	 */
+	public final long evictions;
+
+	public SearchCacheStats(long hits, long misses, long evictions) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchCacheStats(hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ")";
+	}
+}
@@ -0,0 +1,123 @@
+package com.itranswarp.search;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Share results of identical searches of SearchableClient, either from the
+ * search cache or by joining an identical search in flight.
+ */
+class SearchCoalescer {
+
+	private SearchCache searchCache = null;
+	private boolean coalesceSearches = false;
+	private final ConcurrentMap<SearchCacheKey, CompletableFuture<SearchResults<?>>> inflightSearches =
+			new ConcurrentHashMap<>();
+	private final AtomicLong coalescedSearches = new AtomicLong();
+
+	void setSearchCache(SearchCache searchCache) {
+		this.searchCache = searchCache;
+	}
+
+	SearchCache getSearchCache() {
+		return searchCache;
+	}
+
+	void setCoalesceSearches(boolean coalesceSearches) {
+		this.coalesceSearches = coalesceSearches;
+	}
+
+	boolean isCoalesceSearches() {
+		return coalesceSearches;
+	}
+
+	long getCoalescedSearches() {
+		return coalescedSearches.get();
+	}
+
+	/**
+	 * Return true if searches need a key to be cached or coalesced.
+	 */
+	boolean isEnabled() {
+		return searchCache != null || coalesceSearches;
+	}
+
+	/**
+	 * Get cached results, or null if key is null or not cached.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> SearchResults<T> get(SearchCacheKey key) {
+		if (key == null || searchCache == null) {
+			return null;
+		}
+		return (SearchResults<T>) searchCache.get(key);
+	}
+
+	/**
+	 * Get generation of document type after a miss, or -1 if no cache is set.
+	 */
+	long getGeneration(Class<?> clazz) {
+		return searchCache == null ? -1 : searchCache.getGeneration(clazz);
+	}
+
+	/**
+	 * Put results into cache if key is not null. Results with a key may be
+	 * returned to several callers, so the list is made unmodifiable.
+	 * 
+	 * @param generation
+	 *            Generation of document type got from cache before search.
+	 */
+	<T> SearchResults<T> shareResults(SearchCacheKey key, long generation, SearchResults<T> results) {
+		if (key == null) {
+			return results;
+		}
+		SearchResults<T> shared = results.unmodifiable();
+		if (searchCache != null) {
+			searchCache.put(key, shared, generation);
+		}
+		return shared;
+	}
+
+	/**
+	 * Execute search only if there is no identical search in flight, otherwise
+	 * wait for the in-flight one. Each caller gets its own dependent future so
+	 * that cancelling it does not affect other callers.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> CompletableFuture<SearchResults<T>> coalesce(SearchCacheKey key,
+			Supplier<CompletableFuture<SearchResults<T>>> search) {
+		CompletableFuture<SearchResults<?>> flight = new CompletableFuture<>();
+		CompletableFuture<SearchResults<?>> existing = inflightSearches.putIfAbsent(key, flight);
+		if (existing != null) {
+			coalescedSearches.incrementAndGet();
+			return existing.thenApply((sr) -> (SearchResults<T>) sr);
+		}
+		try {
+			search.get().whenComplete((sr, e) -> {
+				inflightSearches.remove(key, flight);
+				if (e != null) {
+					flight.completeExceptionally(e);
+				} else {
+					flight.complete(sr);
+				}
+			});
+		} catch (RuntimeException e) {
+			inflightSearches.remove(key, flight);
+			flight.completeExceptionally(e);
+		}
+		return flight.thenApply((sr) -> (SearchResults<T>) sr);
+	}
+
+	void invalidate(Class<?> clazz) {
+		if (searchCache != null) {
+			searchCache.invalidate(clazz);
+		}
+		// searches started before the change must not be joined by new ones:
+		if (!inflightSearches.isEmpty()) {
+			inflightSearches.keySet().removeIf((key) -> key.getDocumentClass() == clazz);
+		}
+	}
+}
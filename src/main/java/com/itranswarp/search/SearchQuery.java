@@ -0,0 +1,506 @@
+package com.itranswarp.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+import com.itranswarp.search.MetricsListener.Operation;
+
+/**
+ * A typed query of document, created by SearchableClient.query(). Filters and
+ * ranges are executed in filter context, so they do not affect scores and can
+ * be cached by ES.
+ * 
+ * <code>
+ * SearchResults&lt;Tweet&gt; sr = client.query(Tweet.class).text("trump").filter("via", "iPhone")
+ *         .range("createdAt", start, null).sortByDesc("createdAt").size(20).search();
+ * </code>
+ * 
+ * Facets and stats are aggregated by ES over all hits in the same request,
+ * and returned in SearchResults.facets and SearchResults.stats:
+ * 
+ * <code>
+ * SearchResults&lt;Tweet&gt; sr = client.query(Tweet.class).text("trump").facet("via", 10).stats("createdAt")
+ *         .search();
+ * </code>
+ */
+public class SearchQuery<T> {
+
+	static final String FACET_PREFIX = "facet:";
+	static final String STATS_PREFIX = "stats:";
+
+	final SearchableClient client;
+	final Mapping mapping;
+
+	String words = null;
+	Span[] spans = SplitUtil.EMPTY_SPANS;
+	boolean isMust = false;
+	float minScore = 0;
+	String[] fields = SearchableClient.EMPTY_FIELDS;
+	int from = -1;
+	int size = -1;
+	Object[] cursor = null;
+	String[] indices = null;
+	String routing = null;
+	final List<QueryBuilder> filters = new ArrayList<>();
+	final List<SortBuilder<?>> sorts = new ArrayList<>();
+	final Map<String, AggregationBuilder> aggregations = new LinkedHashMap<>();
+
+	SearchQuery(SearchableClient client, Mapping mapping) {
+		this.client = client;
+		this.mapping = mapping;
+	}
+
+	/**
+	 * Match text as SearchableClient.search() does. Any word can match.
+	 * 
+	 * @param words
+	 *            Search words.
+	 * @return This query.
+	 */
+	public SearchQuery<T> text(String words) {
+		return text(words, false);
+	}
+
+	/**
+	 * Match text as SearchableClient.search() does.
+	 * 
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @return This query.
+	 */
+	public SearchQuery<T> text(String words, boolean isMust) {
+		this.words = words;
+		this.spans = SplitUtil.split(words);
+		this.isMust = isMust;
+		return this;
+	}
+
+	/**
+	 * Set min score of hits. Only useful with text.
+	 * 
+	 * @param minScore
+	 *            Min score, default 0.
+	 * @return This query.
+	 */
+	public SearchQuery<T> minScore(float minScore) {
+		this.minScore = minScore;
+		return this;
+	}
+
+	/**
+	 * Filter documents whose field equals to value.
+	 * 
+	 * @param field
+	 *            Name of keyword, numeric or boolean field.
+	 * @param value
+	 *            Value of field.
+	 * @return This query.
+	 */
+	public SearchQuery<T> filter(String field, Object value) {
+		checkFilterable(field);
+		checkValue(field, value);
+		this.filters.add(QueryBuilders.termQuery(field, value));
+		return this;
+	}
+
+	/**
+	 * Only search the shard of routing, and filter documents whose routing
+	 * field equals to value, since documents of other routing values may be
+	 * in the same shard. Type must have a @SearchableRouting field.
+	 * 
+	 * @param value
+	 *            Value of routing field.
+	 * @return This query.
+	 */
+	public SearchQuery<T> routing(Object value) {
+		if (!mapping.isRouted()) {
+			throw new IllegalArgumentException(
+					"Cannot use routing since type " + mapping.getType() + " has no @SearchableRouting field.");
+		}
+		if (this.routing != null) {
+			throw new IllegalArgumentException("Routing is already set.");
+		}
+		filter(mapping.routingField, value);
+		this.routing = value.toString();
+		return this;
+	}
+
+	/**
+	 * Filter documents whose field equals to any of values.
+	 * 
+	 * @param field
+	 *            Name of keyword, numeric or boolean field.
+	 * @param values
+	 *            Values of field.
+	 * @return This query.
+	 */
+	public SearchQuery<T> filterIn(String field, Object... values) {
+		checkFilterable(field);
+		if (values.length == 0) {
+			throw new IllegalArgumentException("Values cannot be empty.");
+		}
+		for (Object value : values) {
+			checkValue(field, value);
+		}
+		this.filters.add(QueryBuilders.termsQuery(field, values));
+		return this;
+	}
+
+	/**
+	 * Filter documents whose field is in range [from, to].
+	 * 
+	 * @param field
+	 *            Name of keyword or numeric field.
+	 * @param from
+	 *            Lower bound, inclusive. Null for unbounded.
+	 * @param to
+	 *            Upper bound, inclusive. Null for unbounded.
+	 * @return This query.
+	 */
+	public SearchQuery<T> range(String field, Object from, Object to) {
+		checkFilterable(field);
+		if ("boolean".equals(mapping.getEsType(field))) {
+			throw new IllegalArgumentException("Cannot use range on boolean field: " + field);
+		}
+		if (from == null && to == null) {
+			throw new IllegalArgumentException("Range must have at least one bound.");
+		}
+		RangeQueryBuilder range = QueryBuilders.rangeQuery(field);
+		if (from != null) {
+			checkValue(field, from);
+			range.gte(from);
+		}
+		if (to != null) {
+			checkValue(field, to);
+			range.lte(to);
+		}
+		this.filters.add(range);
+		return this;
+	}
+
+	/**
+	 * Only search rolling indices of periods between from and to. A document
+	 * is in the index of the period when it was indexed, so use range() on a
+	 * time field of the document if hits must be exactly in the range. Ignored
+	 * if document type does not roll over.
+	 * 
+	 * @param from
+	 *            Start time in milliseconds, inclusive.
+	 * @param to
+	 *            End time in milliseconds, inclusive.
+	 * @return This query.
+	 */
+	public SearchQuery<T> between(long from, long to) {
+		if (from > to) {
+			throw new IllegalArgumentException("Invalid time range: from is after to.");
+		}
+		if (mapping.isRolling()) {
+			this.indices = client.getReadIndices(mapping, from, to);
+		}
+		return this;
+	}
+
+	/**
+	 * Sort by field in ascending order. Can be called multiple times.
+	 * 
+	 * @param field
+	 *            Name of keyword, numeric or boolean field with doc values.
+	 * @return This query.
+	 */
+	public SearchQuery<T> sortBy(String field) {
+		checkSortable(field);
+		this.sorts.add(SortBuilders.fieldSort(field).order(SortOrder.ASC));
+		return this;
+	}
+
+	/**
+	 * Sort by field in descending order. Can be called multiple times.
+	 * 
+	 * @param field
+	 *            Name of keyword, numeric or boolean field with doc values.
+	 * @return This query.
+	 */
+	public SearchQuery<T> sortByDesc(String field) {
+		checkSortable(field);
+		this.sorts.add(SortBuilders.fieldSort(field).order(SortOrder.DESC));
+		return this;
+	}
+
+	/**
+	 * Sort by score in descending order.
+	 * 
+	 * @return This query.
+	 */
+	public SearchQuery<T> sortByScore() {
+		this.sorts.add(SortBuilders.scoreSort());
+		return this;
+	}
+
+	/**
+	 * Count hits by terms of field. Buckets are ordered by count.
+	 * 
+	 * @param field
+	 *            Name of keyword, numeric or boolean field with doc values.
+	 * @param size
+	 *            Max number of buckets.
+	 * @return This query.
+	 */
+	public SearchQuery<T> facet(String field, int size) {
+		checkAggregatable(field);
+		if (size <= 0) {
+			throw new IllegalArgumentException("Size of facet must be positive.");
+		}
+		addAggregation(FACET_PREFIX + field, AggregationBuilders.terms(FACET_PREFIX + field).field(field).size(size));
+		return this;
+	}
+
+	/**
+	 * Count hits by fixed intervals of field. Buckets are ordered by key, and
+	 * empty buckets are omitted.
+	 * 
+	 * @param field
+	 *            Name of numeric field with doc values.
+	 * @param interval
+	 *            Interval of buckets.
+	 * @return This query.
+	 */
+	public SearchQuery<T> histogram(String field, double interval) {
+		checkNumericAggregatable(field);
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Interval of histogram must be positive.");
+		}
+		addAggregation(FACET_PREFIX + field,
+				AggregationBuilders.histogram(FACET_PREFIX + field).field(field).interval(interval).minDocCount(1));
+		return this;
+	}
+
+	/**
+	 * Compute count, min, max, avg and sum of field over hits.
+	 * 
+	 * @param field
+	 *            Name of numeric field with doc values.
+	 * @return This query.
+	 */
+	public SearchQuery<T> stats(String field) {
+		checkNumericAggregatable(field);
+		addAggregation(STATS_PREFIX + field, AggregationBuilders.stats(STATS_PREFIX + field).field(field));
+		return this;
+	}
+
+	/**
+	 * Only fetch and populate specified fields.
+	 * 
+	 * @param fields
+	 *            Field names.
+	 * @return This query.
+	 */
+	public SearchQuery<T> fields(String... fields) {
+		mapping.project(fields);
+		this.fields = fields;
+		return this;
+	}
+
+	/**
+	 * Set offset of first hit.
+	 * 
+	 * @param from
+	 *            Offset.
+	 * @return This query.
+	 */
+	public SearchQuery<T> from(int from) {
+		this.from = from;
+		return this;
+	}
+
+	/**
+	 * Set max number of hits.
+	 * 
+	 * @param size
+	 *            Max number of hits, default to maxResults of client.
+	 * @return This query.
+	 */
+	public SearchQuery<T> size(int size) {
+		this.size = size;
+		return this;
+	}
+
+	/**
+	 * Get hits after cursor of previous page. The query must have the same
+	 * sorts as the query of previous page.
+	 * 
+	 * @param cursor
+	 *            Cursor from SearchResults of previous page.
+	 * @return This query.
+	 */
+	public SearchQuery<T> searchAfter(Object[] cursor) {
+		if (cursor == null) {
+			throw new IllegalArgumentException("Cursor cannot be null.");
+		}
+		this.cursor = cursor;
+		return this;
+	}
+
+	/**
+	 * Execute query.
+	 * 
+	 * @return SearchResults.
+	 */
+	public SearchResults<T> search() {
+		int[] projection = mapping.project(fields);
+		return client.call(Operation.SEARCH, mapping, words, prepareSearch(), (sr) -> {
+			return client.<T>toSearchResults(mapping, sr, projection);
+		});
+	}
+
+	/**
+	 * Execute query without blocking the caller thread.
+	 * 
+	 * @return CompletableFuture of SearchResults.
+	 */
+	public CompletableFuture<SearchResults<T>> searchAsync() {
+		int[] projection = mapping.project(fields);
+		return client.execute(Operation.SEARCH, mapping, words, prepareSearch(), (sr) -> {
+			return client.toSearchResults(mapping, sr, projection);
+		});
+	}
+
+	QueryBuilder createQueryBuilder() {
+		QueryBuilder textQuery = spans.length == 0 ? null : client.createQueryBuilder(mapping, spans, isMust);
+		if (filters.isEmpty()) {
+			return textQuery == null ? QueryBuilders.matchAllQuery() : textQuery;
+		}
+		BoolQueryBuilder bool = QueryBuilders.boolQuery();
+		if (textQuery != null) {
+			bool.must(textQuery);
+		}
+		for (QueryBuilder filter : filters) {
+			bool.filter(filter);
+		}
+		return bool;
+	}
+
+	/**
+	 * Prepare search request. Hits are sorted only if sorts are set or cursor
+	 * is used, and then _uid is added as tie breaker so that SearchResults has
+	 * cursor of next page.
+	 */
+	SearchRequestBuilder prepareSearch() {
+		float score = spans.length == 0 ? 0 : minScore;
+		SearchRequestBuilder srb = client.prepareSearch(mapping, createQueryBuilder(), score, fields);
+		if (indices != null) {
+			// indices of periods without any document do not exist:
+			srb.setIndices(indices).setIndicesOptions(IndicesOptions.lenientExpandOpen());
+		}
+		if (routing != null) {
+			srb.setRouting(routing);
+		}
+		if (from >= 0) {
+			srb.setFrom(from);
+		}
+		if (size >= 0) {
+			srb.setSize(size);
+		}
+		if (!sorts.isEmpty() || cursor != null) {
+			if (sorts.isEmpty()) {
+				srb.addSort(SortBuilders.scoreSort());
+			}
+			for (SortBuilder<?> sort : sorts) {
+				srb.addSort(sort);
+			}
+			srb.addSort("_uid", SortOrder.ASC);
+			if (cursor != null) {
+				srb.searchAfter(cursor);
+			}
+		}
+		for (AggregationBuilder agg : aggregations.values()) {
+			srb.addAggregation(agg);
+		}
+		return srb;
+	}
+
+	void addAggregation(String name, AggregationBuilder agg) {
+		if (aggregations.containsKey(name)) {
+			throw new IllegalArgumentException("Duplicate aggregation: " + name);
+		}
+		aggregations.put(name, agg);
+	}
+
+	void checkFilterable(String field) {
+		SearchableField sf = mapping.getSearchableField(field);
+		if (!sf.index()) {
+			throw new IllegalArgumentException("Cannot filter on field " + field + " since it is not indexed.");
+		}
+		if ("text".equals(mapping.getEsType(field))) {
+			throw new IllegalArgumentException(
+					"Cannot filter on text field " + field + ". Use keyword = true for exact match.");
+		}
+	}
+
+	void checkSortable(String field) {
+		SearchableField sf = mapping.getSearchableField(field);
+		if ("text".equals(mapping.getEsType(field))) {
+			throw new IllegalArgumentException("Cannot sort by text field " + field + ".");
+		}
+		if (!sf.docValues()) {
+			throw new IllegalArgumentException("Cannot sort by field " + field + " since it has no doc values.");
+		}
+	}
+
+	void checkAggregatable(String field) {
+		SearchableField sf = mapping.getSearchableField(field);
+		if ("text".equals(mapping.getEsType(field))) {
+			throw new IllegalArgumentException(
+					"Cannot aggregate on text field " + field + ". Use keyword = true for exact match.");
+		}
+		if (!sf.docValues()) {
+			throw new IllegalArgumentException("Cannot aggregate on field " + field + " since it has no doc values.");
+		}
+	}
+
+	void checkNumericAggregatable(String field) {
+		checkAggregatable(field);
+		String type = mapping.getEsType(field);
+		if ("keyword".equals(type) || "boolean".equals(type)) {
+			throw new IllegalArgumentException("Cannot aggregate on non-numeric field " + field + ".");
+		}
+	}
+
+	void checkValue(String field, Object value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Value of field " + field + " cannot be null.");
+		}
+		String type = mapping.getEsType(field);
+		boolean ok;
+		switch (type) {
+		case "keyword":
+			ok = value instanceof String;
+			break;
+		case "boolean":
+			ok = value instanceof Boolean;
+			break;
+		default:
+			ok = value instanceof Number;
+		}
+		if (!ok) {
+			throw new IllegalArgumentException("Invalid value type " + value.getClass().getName() + " for " + type
+					+ " field " + field + ".");
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package com.itranswarp.search;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class SearchResults<T> {
 
@@ -8,8 +10,46 @@ public class SearchResults<T> {
 
 	public final List<T> results;
 
+	/**
+	 * Sort values of the last hit, used as search_after cursor to get next
+	 * page. Null if results are not paged or the page is empty. The last page
+	 * also has a cursor, so stop paging when fewer results than the page size
+	 * are returned.
+	 */
+	public final Object[] cursor;
+
+	/**
+	 * Facets requested by SearchQuery, keyed by field name.
+	 */
+	public final Map<String, Facet> facets;
+
+	/**
+	 * Field stats requested by SearchQuery, keyed by field name.
+	 */
+	public final Map<String, FieldStats> stats;
+
 	public SearchResults(long hits, List<T> results) {
+		this(hits, results, null);
+	}
+
+	public SearchResults(long hits, List<T> results, Object[] cursor) {
+		this(hits, results, cursor, Collections.emptyMap(), Collections.emptyMap());
+	}
+
+	public SearchResults(long hits, List<T> results, Object[] cursor, Map<String, Facet> facets,
+			Map<String, FieldStats> stats) {
 		this.hits = hits;
 		this.results = results;
+		this.cursor = cursor;
+		this.facets = facets;
+		this.stats = stats;
+	}
+
+	/**
+	 * Copy of these results with an unmodifiable result list. Facets and stats
+	 * are kept.
+	 */
+	public SearchResults<T> unmodifiable() {
+		return new SearchResults<>(hits, Collections.unmodifiableList(results), cursor, facets, stats);
 	}
 }
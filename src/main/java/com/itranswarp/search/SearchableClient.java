@@ -1,14 +1,40 @@
 package com.itranswarp.search;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.admin.indices.alias.Alias;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
@@ -16,23 +42,48 @@ import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRespon
 import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsRequest;
 import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsResponse;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
-import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.delete.DeleteRequestBuilder;
+import org.elasticsearch.action.get.GetRequestBuilder;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.MultiMatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.suggest.Suggest;
+import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.SuggestBuilders;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
+import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.transport.client.PreBuiltTransportClient;
 
+import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
+import com.itranswarp.search.MetricsListener.Operation;
+
 /**
  * A searchable client.
  * 
@@ -40,6 +91,23 @@ import org.elasticsearch.transport.client.PreBuiltTransportClient;
  */
 public class SearchableClient implements AutoCloseable {
 
+	static final String SUGGESTION = "suggestion";
+
+	/**
+	 * Factor of suggest options fetched to get enough distinct documents.
+	 */
+	static final int SUGGEST_OVERFETCH = 2;
+
+	static final String WRITE_ALIAS_SUFFIX = "-write";
+
+	/**
+	 * Max number of rolling indices listed for a time range. Read alias is
+	 * used for larger range.
+	 */
+	static final int MAX_ROLLING_INDICES = 400;
+
+	static final String[] EMPTY_FIELDS = new String[0];
+
 	private final Log log = LogFactory.getLog(getClass());
 
 	private String basePackage;
@@ -47,106 +115,1207 @@ public class SearchableClient implements AutoCloseable {
 	private String host = "localhost";
 	private int port = 9300;
 	private int maxResults = 100;
+	private int scrollSize = 500;
+	private long scrollKeepAlive = 60000;
+	private int multiGetBatchSize = 500;
+	private int bulkActions = 1000;
+	private long bulkSizeInBytes = 5 * 1024 * 1024;
+	private long bulkFlushInterval = 1000;
+	private int bulkConcurrentRequests = 1;
+
+	private Map<String, Map<String, Object>> analysis = Collections.emptyMap();
+	private Executor executor = ForkJoinPool.commonPool();
+
+	final RequestRecorder recorder = new RequestRecorder();
+	final SearchCoalescer searches = new SearchCoalescer();
+
+	private Client client;
+	private Set<Class<?>> docTypes = Collections.emptySet();
+	private final Map<Class<?>, Mapping> mappings = new ConcurrentHashMap<>();
+
+	public void setBasePackage(String basePackage) {
+		this.basePackage = basePackage;
+	}
+
+	public void setIndex(String index) {
+		this.index = index;
+	}
+
+	public void setHost(String host) {
+		this.host = host;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public void setMaxResults(int maxResults) {
+		this.maxResults = maxResults;
+	}
+
+	/**
+	 * Set number of hits pulled in each batch by scroll.
+	 * 
+	 * @param scrollSize
+	 *            Number of hits, default 500.
+	 */
+	public void setScrollSize(int scrollSize) {
+		this.scrollSize = scrollSize;
+	}
+
+	/**
+	 * Set how long the scroll context is kept alive between two batches.
+	 * 
+	 * @param scrollKeepAlive
+	 *            Time in milliseconds, default 60000.
+	 */
+	public void setScrollKeepAlive(long scrollKeepAlive) {
+		this.scrollKeepAlive = scrollKeepAlive;
+	}
+
+	/**
+	 * Set max number of ids sent in one multi-get request. Larger id lists are
+	 * split into several requests executed concurrently.
+	 * 
+	 * @param multiGetBatchSize
+	 *            Number of ids, default 500.
+	 */
+	public void setMultiGetBatchSize(int multiGetBatchSize) {
+		this.multiGetBatchSize = multiGetBatchSize;
+	}
+
+	/**
+	 * Set max number of documents buffered in a bulk request.
+	 * 
+	 * @param bulkActions
+	 *            Number of documents, default 1000. 0 to disable.
+	 */
+	public void setBulkActions(int bulkActions) {
+		this.bulkActions = bulkActions;
+	}
+
+	/**
+	 * Set max bytes buffered in a bulk request.
+	 * 
+	 * @param bulkSizeInBytes
+	 *            Size in bytes, default 5 MB. 0 to disable.
+	 */
+	public void setBulkSizeInBytes(long bulkSizeInBytes) {
+		this.bulkSizeInBytes = bulkSizeInBytes;
+	}
+
+	/**
+	 * Set interval to flush a bulk request no matter how many documents are
+	 * buffered.
+	 * 
+	 * @param bulkFlushInterval
+	 *            Interval in milliseconds, default 1000. 0 to disable.
+	 */
+	public void setBulkFlushInterval(long bulkFlushInterval) {
+		this.bulkFlushInterval = bulkFlushInterval;
+	}
+
+	/**
+	 * Set number of bulk requests allowed to be executed while buffering new
+	 * documents.
+	 * 
+	 * @param bulkConcurrentRequests
+	 *            Number of concurrent requests, default 1. 0 to send bulk
+	 *            requests synchronously.
+	 */
+	public void setBulkConcurrentRequests(int bulkConcurrentRequests) {
+		this.bulkConcurrentRequests = bulkConcurrentRequests;
+	}
+
+	/**
+	 * Set extra analysis settings of index, e.g. custom analyzers. Built-in
+	 * analyzers SearchableField.CJK_BIGRAM and SearchableField.EDGE_NGRAM are
+	 * always added. Settings are only applied when createIndex() creates the
+	 * index.
+	 * 
+	 * @param analysis
+	 *            Settings keyed by section ("analyzer", "tokenizer", "filter"
+	 *            or "char_filter") and then by name.
+	 */
+	public void setAnalysis(Map<String, Map<String, Object>> analysis) {
+		this.analysis = analysis;
+	}
+
+	/**
+	 * Set executor to create beans and complete futures returned by async
+	 * methods.
+	 * 
+	 * @param executor
+	 *            Executor, default to ForkJoinPool.commonPool().
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set listener to receive latency and counters of every request.
+	 * 
+	 * @param metricsListener
+	 *            MetricsListener, e.g. HistogramMetrics. Default to null.
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		recorder.setMetricsListener(metricsListener);
+	}
+
+	/**
+	 * Set cache of search results. Only search() and searchAsync() without
+	 * paging are cached. Results of a document type are invalidated when a
+	 * document of the type is indexed or unindexed by this client.
+	 * 
+	 * @param searchCache
+	 *            SearchCache, default to null (no cache).
+	 */
+	public void setSearchCache(SearchCache searchCache) {
+		searches.setSearchCache(searchCache);
+	}
+
+	/**
+	 * Get cache of search results.
+	 * 
+	 * @return SearchCache, or null if not set.
+	 */
+	public SearchCache getSearchCache() {
+		return searches.getSearchCache();
+	}
+
+	/**
+	 * Set whether identical searches executed at the same time share one ES
+	 * request. Only search() and searchAsync() without paging are coalesced.
+	 * 
+	 * @param coalesceSearches
+	 *            True to coalesce, default false.
+	 */
+	public void setCoalesceSearches(boolean coalesceSearches) {
+		searches.setCoalesceSearches(coalesceSearches);
+	}
+
+	/**
+	 * Get number of searches which waited for an identical in-flight search
+	 * instead of sending a request.
+	 * 
+	 * @return Number of coalesced searches.
+	 */
+	public long getCoalescedSearches() {
+		return searches.getCoalescedSearches();
+	}
+
+	/**
+	 * Set threshold of slow query in milliseconds. A search whose response is
+	 * not received within the threshold is reported as SlowQuery with its words
+	 * and generated query.
+	 * 
+	 * @param slowQueryThreshold
+	 *            Threshold in milliseconds, default to -1 (disabled).
+	 */
+	public void setSlowQueryThreshold(long slowQueryThreshold) {
+		recorder.setSlowQueryThreshold(slowQueryThreshold);
+	}
+
+	/**
+	 * Set whether searches are executed with profile enabled, so that slow
+	 * queries carry the profile breakdown of each shard. Profiling adds
+	 * overhead to every search, so enable it only while tuning queries.
+	 * 
+	 * @param profileSearches
+	 *            True to profile, default false.
+	 */
+	public void setProfileSearches(boolean profileSearches) {
+		recorder.setProfileSearches(profileSearches);
+	}
+
+	/**
+	 * Set handler of slow queries.
+	 * 
+	 * @param slowQueryHandler
+	 *            Handler of SlowQuery. Default to null (log as warning).
+	 */
+	public void setSlowQueryHandler(Consumer<SlowQuery> slowQueryHandler) {
+		recorder.setSlowQueryHandler(slowQueryHandler);
+	}
+
+	public <T> SearchResults<T> search(Class<T> clazz, String words) {
+		return search(clazz, words, false, 0.5f);
+	}
+
+	public <T> SearchResults<T> search(Class<T> clazz, String words, float minScore) {
+		return search(clazz, words, false, minScore);
+	}
+
+	public <T> SearchResults<T> search(Class<T> clazz, String words, boolean isMust, float minScore) {
+		return search(clazz, words, isMust, minScore, EMPTY_FIELDS);
+	}
+
+	/**
+	 * Search documents but only fetch and populate specified fields.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @param minScore
+	 *            Min score of hits.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return SearchResults, or null if no word to search.
+	 */
+	public <T> SearchResults<T> search(Class<T> clazz, String words, boolean isMust, float minScore,
+			String... fields) {
+		Mapping mapping = getMappingFromClass(clazz);
+		int[] projection = mapping.project(fields);
+		Span[] spans = SplitUtil.split(words);
+		if (spans.length == 0) {
+			return null;
+		}
+		SearchCacheKey key = searches.isEnabled()
+				? new SearchCacheKey(clazz, spans, isMust, minScore, maxResults, fields) : null;
+		SearchResults<T> cached = searches.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		long generation = searches.getGeneration(clazz);
+		if (searches.isCoalesceSearches()) {
+			return await(searches.coalesce(key, () -> {
+				SearchRequestBuilder srb = prepareSearch(mapping, spans, isMust, minScore, fields);
+				return execute(Operation.SEARCH, mapping, words, srb, (sr) -> {
+					return searches.shareResults(key, generation, toSearchResults(mapping, sr, projection));
+				});
+			}));
+		}
+		SearchResults<T> results = call(Operation.SEARCH, mapping, words,
+				prepareSearch(mapping, spans, isMust, minScore, fields), (sr) -> {
+					return this.<T>toSearchResults(mapping, sr, projection);
+				});
+		return searches.shareResults(key, generation, results);
+	}
+
+	/**
+	 * Search documents whose score is at least a fraction of the top score. The
+	 * top score is fetched first by a search of one hit without source, then it
+	 * is used as min score of the actual search.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @param minScoreRatio
+	 *            Fraction of the top score, between 0 and 1.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return SearchResults, or null if no word to search.
+	 */
+	public <T> SearchResults<T> searchRelative(Class<T> clazz, String words, boolean isMust, float minScoreRatio,
+			String... fields) {
+		if (minScoreRatio < 0 || minScoreRatio > 1) {
+			throw new IllegalArgumentException("Min score ratio must be between 0 and 1.");
+		}
+		Mapping mapping = getMappingFromClass(clazz);
+		int[] projection = mapping.project(fields);
+		SearchRequestBuilder top = prepareSearch(mapping, words, isMust, 0, EMPTY_FIELDS);
+		if (top == null) {
+			return null;
+		}
+		SearchHits topHits = call(Operation.SEARCH, mapping, words, top.setSize(1).setFetchSource(false),
+				SearchResponse::getHits);
+		if (topHits.getTotalHits() == 0) {
+			return new SearchResults<>(0, new ArrayList<>());
+		}
+		float minScore = topHits.getMaxScore() * minScoreRatio;
+		return call(Operation.SEARCH, mapping, words, prepareSearch(mapping, words, isMust, minScore, fields),
+				(sr) -> {
+			return this.<T>toSearchResults(mapping, sr, projection);
+		});
+	}
+
+	/**
+	 * Search a page of documents. Hits are sorted by score and then by uid, so
+	 * the cursor of results can be passed to searchAfter() to get next page.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @param minScore
+	 *            Min score of hits.
+	 * @param from
+	 *            Offset of first hit.
+	 * @param size
+	 *            Max number of hits.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return SearchResults, or null if no word to search.
+	 */
+	public <T> SearchResults<T> search(Class<T> clazz, String words, boolean isMust, float minScore, int from,
+			int size, String... fields) {
+		Mapping mapping = getMappingFromClass(clazz);
+		int[] projection = mapping.project(fields);
+		SearchRequestBuilder srb = prepareSearch(mapping, words, isMust, minScore, fields);
+		if (srb == null) {
+			return null;
+		}
+		srb.setFrom(from).setSize(size).addSort(SortBuilders.scoreSort()).addSort("_uid", SortOrder.ASC);
+		return call(Operation.SEARCH, mapping, words, srb, (sr) -> {
+			return this.<T>toSearchResults(mapping, sr, projection);
+		});
+	}
+
+	/**
+	 * Search next page of documents after the cursor. Use this instead of a
+	 * large from to page deeply, since from + size hits must be collected on
+	 * every shard.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @param minScore
+	 *            Min score of hits.
+	 * @param cursor
+	 *            Cursor of previous page.
+	 * @param size
+	 *            Max number of hits.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return SearchResults, or null if no word to search.
+	 */
+	public <T> SearchResults<T> searchAfter(Class<T> clazz, String words, boolean isMust, float minScore,
+			Object[] cursor, int size, String... fields) {
+		if (cursor == null) {
+			throw new IllegalArgumentException("Cursor cannot be null.");
+		}
+		Mapping mapping = getMappingFromClass(clazz);
+		int[] projection = mapping.project(fields);
+		SearchRequestBuilder srb = prepareSearch(mapping, words, isMust, minScore, fields);
+		if (srb == null) {
+			return null;
+		}
+		srb.setSize(size).addSort(SortBuilders.scoreSort()).addSort("_uid", SortOrder.ASC).searchAfter(cursor);
+		return call(Operation.SEARCH, mapping, words, srb, (sr) -> {
+			return this.<T>toSearchResults(mapping, sr, projection);
+		});
+	}
+
+	/**
+	 * Iterate all matched documents by scroll. The iterator must be closed if
+	 * not all documents are consumed.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @param minScore
+	 *            Min score of hits.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return ScrollIterator, or null if no word to search.
+	 */
+	public <T> ScrollIterator<T> scroll(Class<T> clazz, String words, boolean isMust, float minScore,
+			String... fields) {
+		Mapping mapping = getMappingFromClass(clazz);
+		int[] projection = mapping.project(fields);
+		SearchRequestBuilder srb = prepareSearch(mapping, words, isMust, minScore, fields);
+		if (srb == null) {
+			return null;
+		}
+		TimeValue keepAlive = TimeValue.timeValueMillis(scrollKeepAlive);
+		// sort by _doc is the most efficient order for scroll:
+		srb.setSize(scrollSize).setScroll(keepAlive).addSort("_doc", SortOrder.ASC);
+		return new ScrollIterator<>(this, client, mapping, projection, keepAlive,
+				call(Operation.SCROLL, mapping, words, srb, Function.identity()));
+	}
+
+	/**
+	 * Stream all matched documents by scroll. Close the stream to clear the
+	 * scroll if not all documents are consumed.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @param minScore
+	 *            Min score of hits.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return Stream of java beans. Empty stream if no word to search.
+	 */
+	public <T> Stream<T> stream(Class<T> clazz, String words, boolean isMust, float minScore, String... fields) {
+		ScrollIterator<T> it = scroll(clazz, words, isMust, minScore, fields);
+		if (it == null) {
+			return Stream.empty();
+		}
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(it::close);
+	}
+
+	public <T> CompletableFuture<SearchResults<T>> searchAsync(Class<T> clazz, String words) {
+		return searchAsync(clazz, words, false, 0.5f);
+	}
+
+	public <T> CompletableFuture<SearchResults<T>> searchAsync(Class<T> clazz, String words, float minScore) {
+		return searchAsync(clazz, words, false, minScore);
+	}
+
+	/**
+	 * Search without blocking the caller thread. Beans are created on the
+	 * executor set by setExecutor().
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @param minScore
+	 *            Min score of hits.
+	 * @return CompletableFuture of SearchResults, completed with null if no
+	 *         word to search.
+	 */
+	public <T> CompletableFuture<SearchResults<T>> searchAsync(Class<T> clazz, String words, boolean isMust,
+			float minScore) {
+		return searchAsync(clazz, words, isMust, minScore, EMPTY_FIELDS);
+	}
+
+	/**
+	 * Search without blocking the caller thread, and only fetch and populate
+	 * specified fields.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param words
+	 *            Search words.
+	 * @param isMust
+	 *            True if all words must match.
+	 * @param minScore
+	 *            Min score of hits.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return CompletableFuture of SearchResults, completed with null if no
+	 *         word to search.
+	 */
+	public <T> CompletableFuture<SearchResults<T>> searchAsync(Class<T> clazz, String words, boolean isMust,
+			float minScore, String... fields) {
+		Mapping mapping = getMappingFromClass(clazz);
+		int[] projection = mapping.project(fields);
+		Span[] spans = SplitUtil.split(words);
+		if (spans.length == 0) {
+			return CompletableFuture.completedFuture(null);
+		}
+		SearchCacheKey key = searches.isEnabled()
+				? new SearchCacheKey(clazz, spans, isMust, minScore, maxResults, fields) : null;
+		SearchResults<T> cached = searches.get(key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		long generation = searches.getGeneration(clazz);
+		Supplier<CompletableFuture<SearchResults<T>>> search = () -> {
+			SearchRequestBuilder srb = prepareSearch(mapping, spans, isMust, minScore, fields);
+			return execute(Operation.SEARCH, mapping, words, srb, (sr) -> {
+				return searches.shareResults(key, generation, toSearchResults(mapping, sr, projection));
+			});
+		};
+		return searches.isCoalesceSearches() ? searches.coalesce(key, search) : search.get();
+	}
+
+	/**
+	 * Wait for future and rethrow the original exception of failure.
+	 */
+	static <T> T await(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	void invalidateCache(Mapping mapping) {
+		searches.invalidate(mapping.clazz);
+	}
+
+	/**
+	 * Prepare search request, or null if no word to search.
+	 */
+	SearchRequestBuilder prepareSearch(Mapping mapping, String words, boolean isMust, float minScore,
+			String[] fields) {
+		Span[] spans = SplitUtil.split(words);
+		if (spans.length == 0) {
+			return null;
+		}
+		return prepareSearch(mapping, spans, isMust, minScore, fields);
+	}
+
+	/**
+	 * Prepare search request. Hits below min score are filtered by ES, so they
+	 * are never transferred and are not counted in total hits.
+	 */
+	SearchRequestBuilder prepareSearch(Mapping mapping, Span[] spans, boolean isMust, float minScore,
+			String[] fields) {
+		return prepareSearch(mapping, createQueryBuilder(mapping, spans, isMust), minScore, fields);
+	}
+
+	SearchRequestBuilder prepareSearch(Mapping mapping, QueryBuilder queryBuilder, float minScore, String[] fields) {
+		SearchRequestBuilder srb = client.prepareSearch(getReadIndex(mapping)).setTypes(mapping.getType())
+				.setQuery(queryBuilder).setSize(maxResults);
+		if (minScore > 0) {
+			srb.setMinScore(minScore);
+		}
+		if (fields.length > 0) {
+			srb.setFetchSource(fields, null);
+		}
+		return srb;
+	}
+
+	/**
+	 * Get index or alias to write documents of type.
+	 */
+	String getWriteIndex(Mapping mapping) {
+		if (mapping.isRolling()) {
+			return mapping.index + WRITE_ALIAS_SUFFIX;
+		}
+		return getReadIndex(mapping);
+	}
+
+	/**
+	 * Get index or alias to search documents of type.
+	 */
+	String getReadIndex(Mapping mapping) {
+		return mapping.index == null ? index : mapping.index;
+	}
+
+	/**
+	 * Get indices to search documents indexed in [from, to]. Rolling indices of
+	 * periods out of range are skipped.
+	 */
+	String[] getReadIndices(Mapping mapping, long from, long to) {
+		if (!mapping.isRolling()) {
+			return new String[] { getReadIndex(mapping) };
+		}
+		List<String> names = new ArrayList<>();
+		SearchableDocument.Rollover rollover = mapping.rollover;
+		for (long start = rollover.startOf(from); start <= to; start = rollover.next(start)) {
+			if (names.size() == MAX_ROLLING_INDICES) {
+				return new String[] { getReadIndex(mapping) };
+			}
+			names.add(rollover.indexName(mapping.index, start));
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	<T> SearchResults<T> toSearchResults(Mapping mapping, SearchResponse sr, int[] projection) {
+		SearchHits shs = sr.getHits();
+		long total = shs.getTotalHits();
+		SearchHit[] hs = shs.getHits();
+		List<T> results = new ArrayList<>(hs.length);
+		for (SearchHit sh : hs) {
+			results.add(mapping.createBean(sh.getId(), sh.getSource(), projection));
+		}
+		Object[] cursor = null;
+		if (hs.length > 0) {
+			cursor = hs[hs.length - 1].getSortValues();
+			if (cursor.length == 0) {
+				cursor = null;
+			}
+		}
+		Aggregations aggs = sr.getAggregations();
+		if (aggs == null) {
+			return new SearchResults<>(total, results, cursor);
+		}
+		Map<String, Facet> facets = new LinkedHashMap<>();
+		Map<String, FieldStats> stats = new LinkedHashMap<>();
+		for (Aggregation agg : aggs) {
+			String name = agg.getName();
+			if (agg instanceof Stats && name.startsWith(SearchQuery.STATS_PREFIX)) {
+				Stats st = (Stats) agg;
+				String field = name.substring(SearchQuery.STATS_PREFIX.length());
+				stats.put(field,
+						new FieldStats(field, st.getCount(), st.getMin(), st.getMax(), st.getAvg(), st.getSum()));
+			} else if (agg instanceof MultiBucketsAggregation && name.startsWith(SearchQuery.FACET_PREFIX)) {
+				String field = name.substring(SearchQuery.FACET_PREFIX.length());
+				facets.put(field, toFacet(mapping, field, (MultiBucketsAggregation) agg));
+			}
+		}
+		return new SearchResults<>(total, results, cursor, Collections.unmodifiableMap(facets),
+				Collections.unmodifiableMap(stats));
+	}
+
+	/**
+	 * Convert terms or histogram aggregation to Facet. Bucket keys are
+	 * converted to the field type, e.g. boolean terms are returned as Boolean
+	 * instead of 0 and 1.
+	 */
+	Facet toFacet(Mapping mapping, String field, MultiBucketsAggregation agg) {
+		String esType = mapping.getEsType(field);
+		Class<?> type = mapping.getFieldType(field);
+		List<? extends MultiBucketsAggregation.Bucket> bs = agg.getBuckets();
+		List<Facet.Bucket> buckets = new ArrayList<>(bs.size());
+		for (MultiBucketsAggregation.Bucket b : bs) {
+			Object key;
+			switch (esType) {
+			case "keyword":
+				key = b.getKeyAsString();
+				break;
+			case "boolean":
+				key = Boolean.valueOf(b.getKeyAsString());
+				break;
+			default:
+				key = BeanAccessor.convert(type, b.getKey());
+			}
+			buckets.add(new Facet.Bucket(key, b.getDocCount()));
+		}
+		long otherCount = agg instanceof Terms ? ((Terms) agg).getSumOfOtherDocCounts() : 0;
+		return new Facet(field, Collections.unmodifiableList(buckets), otherCount);
+	}
+
+	QueryBuilder createQueryBuilder(Mapping mapping, Span[] spans, boolean isMust) {
+		if (spans.length == 1) {
+			return createQueryBuilder(mapping, spans[0]);
+		}
+		BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
+		for (Span span : spans) {
+			if (isMust) {
+				boolQueryBuilder.must(createQueryBuilder(mapping, span));
+			} else {
+				boolQueryBuilder.should(createQueryBuilder(mapping, span));
+			}
+		}
+		return boolQueryBuilder;
+	}
+
+	/**
+	 * Create query of a span against the fields of mapping with their boosts. A
+	 * word also matches keyword fields, while a phrase only matches text fields.
+	 * A single CJK character matches the unigram subfields of CJK_BIGRAM
+	 * fields. The _all field is used only if mapping has no field to match.
+	 */
+	QueryBuilder createQueryBuilder(Mapping mapping, Span span) {
+		if (span instanceof Word) {
+			if (mapping.wordFields.isEmpty()) {
+				return QueryBuilders.termQuery("_all", span.text);
+			}
+			if (!SplitUtil.isEnglish(span.text.charAt(0))) {
+				return QueryBuilders.multiMatchQuery(span.text).fields(mapping.charFields);
+			}
+			return QueryBuilders.multiMatchQuery(span.text).fields(mapping.wordFields);
+		}
+		if (span instanceof Phrase) {
+			if (mapping.textFields.isEmpty()) {
+				if (span.text.length() > 3) {
+					return QueryBuilders.multiMatchQuery(span.text, "_all").minimumShouldMatch("75%");
+				} else {
+					return QueryBuilders.matchPhraseQuery("_all", span.text);
+				}
+			}
+			if (span.text.length() > 3) {
+				return QueryBuilders.multiMatchQuery(span.text).fields(mapping.textFields).minimumShouldMatch("75%");
+			} else {
+				return QueryBuilders.multiMatchQuery(span.text).fields(mapping.textFields)
+						.type(MultiMatchQueryBuilder.Type.PHRASE);
+			}
+		}
+		throw new IllegalArgumentException("Unsupported type of Span: " + span.getClass().getName());
+	}
+
+	/**
+	 * Suggest documents whose suggest fields start with prefix, by completion
+	 * suggester. Documents are not fetched.
+	 * 
+	 * @param clazz
+	 *            Class of document, which has @SearchableField(suggest = true).
+	 * @param prefix
+	 *            Prefix typed by user.
+	 * @param n
+	 *            Max number of suggestions.
+	 * @return List of suggestions ordered by score, empty if prefix is empty.
+	 */
+	public List<Suggestion> suggest(Class<?> clazz, String prefix, int n) {
+		Mapping mapping = getMappingFromClass(clazz);
+		SearchRequestBuilder srb = prepareSuggest(mapping, prefix, n);
+		if (srb == null) {
+			return Collections.emptyList();
+		}
+		return call(Operation.SUGGEST, mapping, srb, (sr) -> {
+			return toSuggestions(sr, n);
+		});
+	}
+
+	/**
+	 * Suggest documents without blocking the caller thread.
+	 * 
+	 * @param clazz
+	 *            Class of document, which has @SearchableField(suggest = true).
+	 * @param prefix
+	 *            Prefix typed by user.
+	 * @param n
+	 *            Max number of suggestions.
+	 * @return CompletableFuture of suggestions.
+	 */
+	public CompletableFuture<List<Suggestion>> suggestAsync(Class<?> clazz, String prefix, int n) {
+		Mapping mapping = getMappingFromClass(clazz);
+		SearchRequestBuilder srb = prepareSuggest(mapping, prefix, n);
+		if (srb == null) {
+			return CompletableFuture.completedFuture(Collections.emptyList());
+		}
+		return execute(Operation.SUGGEST, mapping, srb, (sr) -> {
+			return toSuggestions(sr, n);
+		});
+	}
+
+	/**
+	 * Prepare completion suggest request, or null if prefix is empty. Options
+	 * are over-fetched since a document matching by several inputs is
+	 * returned only once.
+	 */
+	SearchRequestBuilder prepareSuggest(Mapping mapping, String prefix, int n) {
+		if (mapping.suggestField == null) {
+			throw new IllegalArgumentException(
+					"No @SearchableField(suggest = true) found in class: " + mapping.clazz.getName());
+		}
+		if (n <= 0) {
+			throw new IllegalArgumentException("Number of suggestions must be positive.");
+		}
+		if (prefix == null || prefix.trim().isEmpty()) {
+			return null;
+		}
+		int size = n > Integer.MAX_VALUE / SUGGEST_OVERFETCH ? Integer.MAX_VALUE : n * SUGGEST_OVERFETCH;
+		SuggestBuilder suggest = new SuggestBuilder().addSuggestion(SUGGESTION,
+				SuggestBuilders.completionSuggestion(mapping.suggestField).prefix(prefix.trim()).size(size));
+		return client.prepareSearch(getReadIndex(mapping)).setSize(0).setFetchSource(false).suggest(suggest);
+	}
+
+	/**
+	 * Convert suggest response to at most n suggestions, one per document.
+	 */
+	List<Suggestion> toSuggestions(SearchResponse sr, int n) {
+		Suggest suggest = sr.getSuggest();
+		if (suggest == null) {
+			return Collections.emptyList();
+		}
+		CompletionSuggestion cs = suggest.getSuggestion(SUGGESTION);
+		List<Suggestion> suggestions = new ArrayList<>();
+		Set<String> ids = new HashSet<>();
+		for (CompletionSuggestion.Entry entry : cs.getEntries()) {
+			for (CompletionSuggestion.Entry.Option option : entry.getOptions()) {
+				String id = option.getHit().getId();
+				// a document matches only once even if several inputs match:
+				if (ids.add(id)) {
+					suggestions.add(new Suggestion(id, option.getText().string(), option.getScore()));
+					if (suggestions.size() == n) {
+						return suggestions;
+					}
+				}
+			}
+		}
+		return suggestions;
+	}
+
+	/**
+	 * Create a multi search to send several queries in one round trip.
+	 * 
+	 * @return MultiSearch object.
+	 */
+	public MultiSearch multiSearch() {
+		return new MultiSearch(this, client);
+	}
+
+	/**
+	 * Create a typed query of document. Filters, ranges and sorts are
+	 * validated against the mapping when they are added.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @return SearchQuery object.
+	 */
+	public <T> SearchQuery<T> query(Class<T> clazz) {
+		return new SearchQuery<>(this, getMappingFromClass(clazz));
+	}
+
+	/**
+	 * Get document by id.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param id
+	 *            Document id.
+	 * @return Java bean.
+	 */
+	public <T> T get(Class<T> clazz, String id) {
+		return get(clazz, id, EMPTY_FIELDS);
+	}
+
+	/**
+	 * Get document by id but only fetch and populate specified fields.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param id
+	 *            Document id.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return Java bean.
+	 */
+	public <T> T get(Class<T> clazz, String id, String... fields) {
+		return getWithRouting(clazz, null, id, fields);
+	}
+
+	/**
+	 * Get document of type with @SearchableRouting by routing and id.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param routing
+	 *            Routing of document.
+	 * @param id
+	 *            Document id.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return Java bean.
+	 */
+	public <T> T getWithRouting(Class<T> clazz, String routing, String id, String... fields) {
+		Mapping mapping = getMappingFromClass(clazz);
+		checkRouting(mapping, routing);
+		int[] projection = mapping.project(fields);
+		if (mapping.isRolling()) {
+			List<String> ids = Collections.singletonList(id);
+			List<String> indices = getRollingIndices(mapping);
+			if (indices.isEmpty()) {
+				return null;
+			}
+			MultiGetRequestBuilder mgrb = prepareGetRolling(mapping, indices, routing, ids, fetchSource(fields));
+			return call(Operation.GET, mapping, mgrb, (r) -> {
+				return this.<T>toBeans(mapping, indices.size(), r, projection).get(0);
+			});
+		}
+		GetRequestBuilder grb = client.prepareGet(getReadIndex(mapping), mapping.getType(), id).setRouting(routing);
+		if (fields.length > 0) {
+			grb.setFetchSource(fields, null);
+		}
+		return call(Operation.GET, mapping, grb, (gr) -> {
+			return this.<T>toBean(mapping, gr, projection);
+		});
+	}
+
+	/**
+	 * Get document by id without blocking the caller thread.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param id
+	 *            Document id.
+	 * @return CompletableFuture of java bean, completed with null if not
+	 *         found.
+	 */
+	public <T> CompletableFuture<T> getAsync(Class<T> clazz, String id) {
+		return getAsyncWithRouting(clazz, null, id);
+	}
+
+	/**
+	 * Get document of type with @SearchableRouting by routing and id without
+	 * blocking the caller thread.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param routing
+	 *            Routing of document.
+	 * @param id
+	 *            Document id.
+	 * @return CompletableFuture of java bean, completed with null if not
+	 *         found.
+	 */
+	public <T> CompletableFuture<T> getAsyncWithRouting(Class<T> clazz, String routing, String id) {
+		Mapping mapping = getMappingFromClass(clazz);
+		checkRouting(mapping, routing);
+		if (mapping.isRolling()) {
+			List<String> ids = Collections.singletonList(id);
+			return getRollingIndicesAsync(mapping).thenCompose((indices) -> {
+				if (indices.isEmpty()) {
+					return CompletableFuture.<T>completedFuture(null);
+				}
+				MultiGetRequestBuilder mgrb = prepareGetRolling(mapping, indices, routing, ids, null);
+				return execute(Operation.GET, mapping, mgrb, (r) -> {
+					return this.<T>toBeans(mapping, indices.size(), r, null).get(0);
+				});
+			});
+		}
+		GetRequestBuilder grb = client.prepareGet(getReadIndex(mapping), mapping.getType(), id).setRouting(routing);
+		return execute(Operation.GET, mapping, grb, (gr) -> {
+			return toBean(mapping, gr, null);
+		});
+	}
+
+	/**
+	 * Get documents by ids in one round trip.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param ids
+	 *            Document ids.
+	 * @return List of java beans in the same order as ids. Element is null if
+	 *         document not found.
+	 */
+	public <T> List<T> getAll(Class<T> clazz, Collection<String> ids) {
+		return getAll(clazz, ids, EMPTY_FIELDS);
+	}
 
-	private Client client;
-	private Map<Class<?>, Mapping> mappings = new HashMap<>();
+	/**
+	 * Get documents by ids in one round trip, but only fetch and populate
+	 * specified fields.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param ids
+	 *            Document ids.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return List of java beans in the same order as ids. Element is null if
+	 *         document not found.
+	 */
+	public <T> List<T> getAll(Class<T> clazz, Collection<String> ids, String... fields) {
+		return getAllWithRouting(clazz, null, ids, fields);
+	}
 
-	public void setBasePackage(String basePackage) {
-		this.basePackage = basePackage;
+	/**
+	 * Get documents of type with @SearchableRouting which have the same
+	 * routing by ids in one round trip.
+	 * 
+	 * @param clazz
+	 *            Class of document.
+	 * @param routing
+	 *            Routing of documents.
+	 * @param ids
+	 *            Document ids.
+	 * @param fields
+	 *            Names of fields to populate. Empty to populate all fields.
+	 * @return List of java beans in the same order as ids. Element is null if
+	 *         document not found.
+	 */
+	public <T> List<T> getAllWithRouting(Class<T> clazz, String routing, Collection<String> ids, String... fields) {
+		Mapping mapping = getMappingFromClass(clazz);
+		checkRouting(mapping, routing);
+		int[] projection = mapping.project(fields);
+		FetchSourceContext fetchSource = fetchSource(fields);
+		List<T> results = new ArrayList<>(ids.size());
+		if (ids.isEmpty()) {
+			return results;
+		}
+		if (mapping.isRolling()) {
+			return getAllRolling(mapping, routing, ids, fetchSource, projection);
+		}
+		// send all batches before waiting for any response, and create beans of
+		// each batch on executor:
+		List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+		MultiGetRequestBuilder mgrb = null;
+		int n = 0;
+		for (String id : ids) {
+			if (mgrb == null) {
+				mgrb = client.prepareMultiGet();
+			}
+			mgrb.add(new MultiGetRequest.Item(getReadIndex(mapping), mapping.getType(), id).routing(routing)
+					.fetchSourceContext(fetchSource));
+			n++;
+			if (n == multiGetBatchSize) {
+				futures.add(execute(Operation.MULTI_GET, mapping, mgrb, (r) -> toBeans(mapping, r, projection)));
+				mgrb = null;
+				n = 0;
+			}
+		}
+		if (mgrb != null) {
+			futures.add(execute(Operation.MULTI_GET, mapping, mgrb, (r) -> toBeans(mapping, r, projection)));
+		}
+		for (CompletableFuture<List<T>> future : futures) {
+			results.addAll(await(future));
+		}
+		return results;
 	}
 
-	public void setIndex(String index) {
-		this.index = index;
+	<T> List<T> toBeans(Mapping mapping, MultiGetResponse response, int[] projection) {
+		List<T> results = new ArrayList<>(response.getResponses().length);
+		for (MultiGetItemResponse item : response) {
+			results.add(toBean(mapping, getResponse(mapping, item), projection));
+		}
+		return results;
 	}
 
-	public void setHost(String host) {
-		this.host = host;
+	FetchSourceContext fetchSource(String[] fields) {
+		return fields.length == 0 ? null : new FetchSourceContext(true, fields, null);
 	}
 
-	public void setPort(int port) {
-		this.port = port;
+	/**
+	 * Get documents of rolling type by realtime multi get from every rolling
+	 * index, since get by id is not supported on alias of several indices.
+	 */
+	<T> List<T> getAllRolling(Mapping mapping, String routing, Collection<String> ids, FetchSourceContext fetchSource,
+			int[] projection) {
+		List<String> indices = getRollingIndices(mapping);
+		List<T> results = new ArrayList<>(ids.size());
+		if (indices.isEmpty()) {
+			results.addAll(Collections.nCopies(ids.size(), null));
+			return results;
+		}
+		// each id is got from every index:
+		int batchSize = Math.max(1, multiGetBatchSize / indices.size());
+		List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+		List<String> batch = new ArrayList<>();
+		for (String id : ids) {
+			batch.add(id);
+			if (batch.size() == batchSize) {
+				futures.add(execute(Operation.MULTI_GET, mapping,
+						prepareGetRolling(mapping, indices, routing, batch, fetchSource),
+						(r) -> this.<T>toBeans(mapping, indices.size(), r, projection)));
+				batch = new ArrayList<>();
+			}
+		}
+		if (!batch.isEmpty()) {
+			futures.add(execute(Operation.MULTI_GET, mapping,
+					prepareGetRolling(mapping, indices, routing, batch, fetchSource),
+					(r) -> this.<T>toBeans(mapping, indices.size(), r, projection)));
+		}
+		for (CompletableFuture<List<T>> future : futures) {
+			results.addAll(await(future));
+		}
+		return results;
 	}
 
-	public void setMaxResults(int maxResults) {
-		this.maxResults = maxResults;
+	/**
+	 * Get concrete indices of rolling type, newest first. Indices are resolved
+	 * on each call since other clients may roll over.
+	 */
+	List<String> getRollingIndices(Mapping mapping) {
+		return toIndices(client.admin().indices().prepareGetAliases(getReadIndex(mapping)).get());
 	}
 
-	public <T> SearchResults<T> search(Class<T> clazz, String words) {
-		return search(clazz, words, false, 0.5f);
+	CompletableFuture<List<String>> getRollingIndicesAsync(Mapping mapping) {
+		CompletableFuture<List<String>> future = new CompletableFuture<>();
+		client.admin().indices().prepareGetAliases(getReadIndex(mapping)).execute(
+				new ActionListener<GetAliasesResponse>() {
+					@Override
+					public void onResponse(GetAliasesResponse response) {
+						future.complete(toIndices(response));
+					}
+
+					@Override
+					public void onFailure(Exception e) {
+						future.completeExceptionally(e);
+					}
+				});
+		// send next request from executor instead of transport thread:
+		return future.thenApplyAsync(Function.identity(), executor);
 	}
 
-	public <T> SearchResults<T> search(Class<T> clazz, String words, float minScore) {
-		return search(clazz, words, false, minScore);
+	static List<String> toIndices(GetAliasesResponse response) {
+		List<String> indices = new ArrayList<>();
+		for (ObjectObjectCursor<String, List<AliasMetaData>> cursor : response.getAliases()) {
+			if (!cursor.value.isEmpty()) {
+				indices.add(cursor.key);
+			}
+		}
+		indices.sort(Collections.reverseOrder());
+		return indices;
 	}
 
-	public <T> SearchResults<T> search(Class<T> clazz, String words, boolean isMust, float minScore) {
-		Mapping mapping = getMappingFromClass(clazz);
-		Span[] spans = SplitUtil.split(words);
-		if (spans.length == 0) {
-			return null;
+	/**
+	 * Prepare realtime multi get of ids from every index. Items of an id are
+	 * in the order of indices.
+	 */
+	MultiGetRequestBuilder prepareGetRolling(Mapping mapping, List<String> indices, String routing,
+			List<String> ids, FetchSourceContext fetchSource) {
+		MultiGetRequestBuilder mgrb = client.prepareMultiGet().setRealtime(true);
+		for (String id : ids) {
+			for (String index : indices) {
+				mgrb.add(new MultiGetRequest.Item(index, mapping.getType(), id).routing(routing)
+						.fetchSourceContext(fetchSource));
+			}
 		}
-		QueryBuilder queryBuilder = null;
-		if (spans.length == 1) {
-			queryBuilder = createQueryBuilder(spans[0]);
-		} else {
-			BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
-			for (Span span : spans) {
-				if (isMust) {
-					boolQueryBuilder.must(createQueryBuilder(span));
-				} else {
-					boolQueryBuilder.should(createQueryBuilder(span));
+		return mgrb;
+	}
+
+	/**
+	 * Convert multi get response of prepareGetRolling() to beans in the order
+	 * of ids. If a document is found in several rolling indices, the one in
+	 * the newest index is used.
+	 */
+	<T> List<T> toBeans(Mapping mapping, int indices, MultiGetResponse response, int[] projection) {
+		MultiGetItemResponse[] items = response.getResponses();
+		List<T> results = new ArrayList<>(items.length / indices);
+		for (int i = 0; i < items.length; i += indices) {
+			T bean = null;
+			for (int j = i; j < i + indices; j++) {
+				GetResponse gr = getResponse(mapping, items[j]);
+				if (gr.isExists()) {
+					bean = mapping.createBean(gr.getId(), gr.getSource(), projection);
+					break;
 				}
 			}
-			queryBuilder = boolQueryBuilder;
+			results.add(bean);
 		}
-		SearchResponse sr = client.prepareSearch(index).setQuery(queryBuilder).setSize(maxResults).get();
-		SearchHits shs = sr.getHits();
-		long total = shs.getTotalHits();
-		SearchHit[] hs = shs.getHits();
-		List<T> results = new ArrayList<>(maxResults);
-		for (int i = 0; i < hs.length; i++) {
-			SearchHit sh = hs[i];
-			if (sh.getScore() >= minScore) {
-				Map<String, Object> props = sh.getSource();
-				results.add(mapping.createBean(sh.getId(), props));
-			} else {
-				break;
+		return results;
+	}
+
+	/**
+	 * Get indices which have the document from multi get response of
+	 * prepareGetRolling() of one id.
+	 */
+	List<String> toExistingIndices(Mapping mapping, MultiGetResponse response) {
+		List<String> indices = new ArrayList<>();
+		for (MultiGetItemResponse item : response) {
+			if (getResponse(mapping, item).isExists()) {
+				indices.add(item.getIndex());
 			}
 		}
-		return new SearchResults<>(total, results);
+		return indices;
 	}
 
-	QueryBuilder createQueryBuilder(Span span) {
-		if (span instanceof Word) {
-			return QueryBuilders.termQuery("_all", span.text);
-		}
-		if (span instanceof Phrase) {
-			if (span.text.length() > 3) {
-				return QueryBuilders.multiMatchQuery(span.text, "_all").minimumShouldMatch("75%");
-			} else {
-				return QueryBuilders.matchPhraseQuery("_all", span.text);
-			}
+	GetResponse getResponse(Mapping mapping, MultiGetItemResponse item) {
+		if (item.isFailed()) {
+			throw new RuntimeException("Failed to get type " + mapping.getType() + "@" + item.getId() + ": "
+					+ item.getFailure().getMessage());
 		}
-		throw new IllegalArgumentException("Unsupported type of Span: " + span.getClass().getName());
+		return item.getResponse();
 	}
 
 	/**
-	 * Get document by id.
-	 * 
-	 * @param clazz
-	 *            Class of document.
-	 * @param id
-	 *            Document id.
-	 * @return Java bean.
+	 * Routing is required by type with @SearchableRouting, and is not allowed
+	 * by other types since their documents are not indexed with routing.
 	 */
-	public <T> T get(Class<T> clazz, String id) {
-		Mapping mapping = getMappingFromClass(clazz);
-		GetResponse gr = client.prepareGet(index, mapping.getType(), id).get();
+	void checkRouting(Mapping mapping, String routing) {
+		if (mapping.isRouted() && routing == null) {
+			throw new IllegalArgumentException("Routing is required by type " + mapping.getType()
+					+ " since it has @SearchableRouting field: " + mapping.routingField);
+		}
+		if (!mapping.isRouted() && routing != null) {
+			throw new IllegalArgumentException("Cannot use routing since type " + mapping.getType()
+					+ " has no @SearchableRouting field.");
+		}
+	}
+
+	<T> T toBean(Mapping mapping, GetResponse gr, int[] projection) {
 		if (!gr.isExists()) {
 			return null;
 		}
 		Map<String, Object> props = gr.getSourceAsMap();
-		return mapping.createBean(id, props);
+		return mapping.createBean(gr.getId(), props, projection);
 	}
 
 	/**
@@ -157,11 +1326,31 @@ public class SearchableClient implements AutoCloseable {
 	 */
 	public <T> void index(T bean) {
 		Mapping mapping = getMappingFromBean(bean);
-		IndexResponse ir = client.prepareIndex(index, mapping.getType(), mapping.getId(bean))
-				.setSource(mapping.getSource(bean)).get();
+		IndexRequestBuilder irb = client.prepareIndex(getWriteIndex(mapping), mapping.getType(), mapping.getId(bean))
+				.setRouting(mapping.getRouting(bean)).setSource(mapping.getSourceAsBytes(bean));
+		IndexResponse ir = call(Operation.INDEX, mapping, irb, Function.identity());
+		invalidateCache(mapping);
 		log.info("Type " + mapping.getType() + "@" + ir.getId() + " indexed.");
 	}
 
+	/**
+	 * Index a searchable bean without blocking the caller thread.
+	 * 
+	 * @param bean
+	 *            Searchable bean.
+	 * @return CompletableFuture completed when bean is indexed.
+	 */
+	public <T> CompletableFuture<Void> indexAsync(T bean) {
+		Mapping mapping = getMappingFromBean(bean);
+		IndexRequestBuilder irb = client.prepareIndex(getWriteIndex(mapping), mapping.getType(), mapping.getId(bean))
+				.setRouting(mapping.getRouting(bean)).setSource(mapping.getSourceAsBytes(bean));
+		return execute(Operation.INDEX, mapping, irb, (ir) -> {
+			invalidateCache(mapping);
+			log.info("Type " + mapping.getType() + "@" + ir.getId() + " indexed.");
+			return null;
+		});
+	}
+
 	/**
 	 * Unindex a searchable bean.
 	 * 
@@ -170,8 +1359,7 @@ public class SearchableClient implements AutoCloseable {
 	 */
 	public <T> void unindex(T bean) {
 		Mapping mapping = getMappingFromBean(bean);
-		DeleteResponse dr = client.prepareDelete(index, mapping.getType(), mapping.getId(bean)).get();
-		log.info("Type " + mapping.getType() + "@" + dr.getId() + " unindexed.");
+		unindex(mapping, mapping.getRouting(bean), mapping.getId(bean));
 	}
 
 	/**
@@ -183,21 +1371,269 @@ public class SearchableClient implements AutoCloseable {
 	 *            Id as string.
 	 */
 	public <T> void unindex(Class<T> clazz, String id) {
+		unindexWithRouting(clazz, null, id);
+	}
+
+	/**
+	 * Unindex a document of type with @SearchableRouting.
+	 * 
+	 * @param clazz
+	 *            Class type.
+	 * @param routing
+	 *            Routing of document.
+	 * @param id
+	 *            Id as string.
+	 */
+	public <T> void unindexWithRouting(Class<T> clazz, String routing, String id) {
+		Mapping mapping = getMappingFromClass(clazz);
+		checkRouting(mapping, routing);
+		unindex(mapping, routing, id);
+	}
+
+	void unindex(Mapping mapping, String routing, String id) {
+		if (mapping.isRolling()) {
+			// delete from every rolling index which has the document:
+			List<String> indices = getRollingIndices(mapping);
+			List<String> found = indices.isEmpty() ? indices
+					: call(Operation.GET, mapping, prepareGetRolling(mapping, indices, routing,
+							Collections.singletonList(id), FetchSourceContext.DO_NOT_FETCH_SOURCE), (r) -> {
+								return toExistingIndices(mapping, r);
+							});
+			if (found.isEmpty()) {
+				log.warn("Type " + mapping.getType() + "@" + id + " not found in rolling indices.");
+				return;
+			}
+			for (String index : found) {
+				call(Operation.UNINDEX, mapping,
+						client.prepareDelete(index, mapping.getType(), id).setRouting(routing), Function.identity());
+			}
+		} else {
+			call(Operation.UNINDEX, mapping,
+					client.prepareDelete(getWriteIndex(mapping), mapping.getType(), id).setRouting(routing),
+					Function.identity());
+		}
+		invalidateCache(mapping);
+		log.info("Type " + mapping.getType() + "@" + id + " unindexed.");
+	}
+
+	/**
+	 * Unindex a searchable bean without blocking the caller thread.
+	 * 
+	 * @param bean
+	 *            Searchable bean.
+	 * @return CompletableFuture completed when bean is unindexed.
+	 */
+	public <T> CompletableFuture<Void> unindexAsync(T bean) {
+		Mapping mapping = getMappingFromBean(bean);
+		return unindexAsync(mapping, mapping.getRouting(bean), mapping.getId(bean));
+	}
+
+	/**
+	 * Unindex a searchable bean without blocking the caller thread.
+	 * 
+	 * @param clazz
+	 *            Class type.
+	 * @param id
+	 *            Id as string.
+	 * @return CompletableFuture completed when bean is unindexed.
+	 */
+	public <T> CompletableFuture<Void> unindexAsync(Class<T> clazz, String id) {
+		return unindexAsyncWithRouting(clazz, null, id);
+	}
+
+	/**
+	 * Unindex a document of type with @SearchableRouting without blocking the
+	 * caller thread.
+	 * 
+	 * @param clazz
+	 *            Class type.
+	 * @param routing
+	 *            Routing of document.
+	 * @param id
+	 *            Id as string.
+	 * @return CompletableFuture completed when document is unindexed.
+	 */
+	public <T> CompletableFuture<Void> unindexAsyncWithRouting(Class<T> clazz, String routing, String id) {
 		Mapping mapping = getMappingFromClass(clazz);
-		DeleteResponse dr = client.prepareDelete(index, mapping.getType(), id).get();
-		log.info("Type " + mapping.getType() + "@" + dr.getId() + " unindexed.");
+		checkRouting(mapping, routing);
+		return unindexAsync(mapping, routing, id);
+	}
+
+	CompletableFuture<Void> unindexAsync(Mapping mapping, String routing, String id) {
+		if (mapping.isRolling()) {
+			List<String> ids = Collections.singletonList(id);
+			return getRollingIndicesAsync(mapping).thenCompose((indices) -> {
+				if (indices.isEmpty()) {
+					return CompletableFuture.completedFuture(indices);
+				}
+				return execute(Operation.GET, mapping, prepareGetRolling(mapping, indices, routing, ids,
+						FetchSourceContext.DO_NOT_FETCH_SOURCE), (r) -> toExistingIndices(mapping, r));
+			}).thenCompose((found) -> {
+				if (found.isEmpty()) {
+					log.warn("Type " + mapping.getType() + "@" + id + " not found in rolling indices.");
+					return CompletableFuture.completedFuture(null);
+				}
+				CompletableFuture<?>[] deletes = new CompletableFuture<?>[found.size()];
+				for (int i = 0; i < deletes.length; i++) {
+					deletes[i] = execute(Operation.UNINDEX, mapping,
+							client.prepareDelete(found.get(i), mapping.getType(), id).setRouting(routing),
+							(dr) -> null);
+				}
+				return CompletableFuture.allOf(deletes).thenRun(() -> {
+					invalidateCache(mapping);
+					log.info("Type " + mapping.getType() + "@" + id + " unindexed.");
+				});
+			});
+		}
+		DeleteRequestBuilder drb = client.prepareDelete(getWriteIndex(mapping), mapping.getType(), id)
+				.setRouting(routing);
+		return execute(Operation.UNINDEX, mapping, drb, (dr) -> {
+			invalidateCache(mapping);
+			log.info("Type " + mapping.getType() + "@" + dr.getId() + " unindexed.");
+			return null;
+		});
+	}
+
+	/**
+	 * Execute request and convert response on the caller thread, recording
+	 * metrics if a listener is set.
+	 */
+	<Response extends ActionResponse, R> R call(Operation operation, Mapping mapping,
+			ActionRequestBuilder<?, Response, ?> builder, Function<Response, R> converter) {
+		return call(operation, mapping, null, builder, converter);
+	}
+
+	/**
+	 * Execute search request of words and convert response on the caller
+	 * thread, recording metrics and slow query.
+	 */
+	<Response extends ActionResponse, R> R call(Operation operation, Mapping mapping, String words,
+			ActionRequestBuilder<?, Response, ?> builder, Function<Response, R> converter) {
+		recorder.checkProfile(operation, builder);
+		long start = System.nanoTime();
+		Response response;
+		R result;
+		long received;
+		try {
+			response = builder.get();
+			received = System.nanoTime();
+			result = converter.apply(response);
+		} catch (RuntimeException e) {
+			recorder.onError(operation, mapping, e);
+			throw e;
+		}
+		recorder.record(operation, mapping, response, start, received, System.nanoTime());
+		recorder.checkSlowQuery(operation, mapping, words, builder.request(), response, received - start);
+		return result;
+	}
+
+	/**
+	 * Execute request asynchronously. The response is converted on executor so
+	 * that neither the conversion nor the dependent stages of the returned
+	 * future run on transport threads.
+	 */
+	<Response extends ActionResponse, R> CompletableFuture<R> execute(Operation operation, Mapping mapping,
+			ActionRequestBuilder<?, Response, ?> builder, Function<Response, R> converter) {
+		return execute(operation, mapping, null, builder, converter);
+	}
+
+	/**
+	 * Execute search request of words asynchronously, recording metrics and
+	 * slow query.
+	 */
+	<Response extends ActionResponse, R> CompletableFuture<R> execute(Operation operation, Mapping mapping,
+			String words, ActionRequestBuilder<?, Response, ?> builder, Function<Response, R> converter) {
+		recorder.checkProfile(operation, builder);
+		CompletableFuture<R> future = new CompletableFuture<>();
+		long start = System.nanoTime();
+		builder.execute(new ActionListener<Response>() {
+			@Override
+			public void onResponse(Response response) {
+				long received = System.nanoTime();
+				try {
+					executor.execute(() -> {
+						long converting = System.nanoTime();
+						R result;
+						try {
+							result = converter.apply(response);
+						} catch (Throwable e) {
+							recorder.onError(operation, mapping, e);
+							future.completeExceptionally(e);
+							return;
+						}
+						// time waiting for executor is not hydration:
+						recorder.record(operation, mapping, response, start + converting - received, converting,
+								System.nanoTime());
+						recorder.checkSlowQuery(operation, mapping, words, builder.request(), response,
+								received - start);
+						future.complete(result);
+					});
+				} catch (RejectedExecutionException e) {
+					recorder.onError(operation, mapping, e);
+					future.completeExceptionally(e);
+				}
+			}
+
+			@Override
+			public void onFailure(Exception e) {
+				recorder.onError(operation, mapping, e);
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Create a bulk indexer. Failed documents are logged as warnings.
+	 * 
+	 * @return BulkIndexer object.
+	 */
+	public BulkIndexer createBulkIndexer() {
+		return createBulkIndexer(null);
+	}
+
+	/**
+	 * Create a bulk indexer.
+	 * 
+	 * @param failureHandler
+	 *            Handler called for each failed document.
+	 * @return BulkIndexer object.
+	 */
+	public BulkIndexer createBulkIndexer(BulkFailureHandler failureHandler) {
+		return new BulkIndexer(this, client, bulkActions, bulkSizeInBytes, bulkFlushInterval,
+				bulkConcurrentRequests, failureHandler);
+	}
+
+	/**
+	 * Create a reindexer which rebuilds the index of document type into a new
+	 * versioned index, and then atomically moves the alias to it. All document
+	 * types in the same index are reindexed.
+	 * 
+	 * @param docType
+	 *            Class of document which is not rolling.
+	 * @return Reindexer.
+	 */
+	public Reindexer createReindexer(Class<?> docType) {
+		Mapping mapping = getMappingFromClass(docType);
+		if (mapping.isRolling()) {
+			throw new IllegalArgumentException("Cannot reindex rolling document type: " + mapping.getType());
+		}
+		String alias = getReadIndex(mapping);
+		List<Mapping> shared = new ArrayList<>();
+		for (Class<?> c : docTypes) {
+			Mapping m = getMappingFromClass(c);
+			if (!m.isRolling() && alias.equals(getReadIndex(m))) {
+				shared.add(m);
+			}
+		}
+		return new Reindexer(this, client, alias, shared, scrollSize, scrollKeepAlive, bulkActions, bulkSizeInBytes);
 	}
 
 	Mapping getMappingFromBean(Object bean) {
 		if (bean == null) {
 			throw new IllegalArgumentException("Argument cannot be null.");
 		}
-		Mapping mapping = mappings.get(bean.getClass());
-		if (mapping == null) {
-			throw new IllegalArgumentException(
-					"Class " + bean.getClass().getName() + " is not defined in searchable packages.");
-		}
-		return mapping;
+		return getMappingFromClass(bean.getClass());
 	}
 
 	Mapping getMappingFromClass(Class<?> clazz) {
@@ -206,7 +1642,12 @@ public class SearchableClient implements AutoCloseable {
 		}
 		Mapping mapping = mappings.get(clazz);
 		if (mapping == null) {
-			throw new IllegalArgumentException("Class " + clazz.getName() + " is not defined in searchable packages.");
+			if (!docTypes.contains(clazz)) {
+				throw new IllegalArgumentException(
+						"Class " + clazz.getName() + " is not defined in searchable packages.");
+			}
+			// mapping is created on first use:
+			mapping = mappings.computeIfAbsent(clazz, Mapping::new);
 		}
 		return mapping;
 	}
@@ -216,27 +1657,42 @@ public class SearchableClient implements AutoCloseable {
 		log.info("Init client...");
 		this.client = new PreBuiltTransportClient(Settings.EMPTY)
 				.addTransportAddress(new InetSocketTransportAddress(InetAddress.getByName(host), port));
-		// check doc types:
-		List<Class<?>> docTypes = ClassUtil.scan(basePackage, (c) -> {
-			return c.isAnnotationPresent(SearchableDocument.class);
-		});
-		for (Class<?> docType : docTypes) {
-			this.mappings.put(docType, new Mapping(docType));
-		}
+		// check doc types, use index written by SearchableDocumentProcessor in
+		// each classpath root if exist, otherwise scan the root:
+		this.docTypes = new HashSet<>(ClassUtil.find(basePackage, SearchableDocument.class,
+				SearchableDocumentProcessor.INDEX_RESOURCE));
 	}
 
 	public boolean createMapping(Class<?> docType) {
+		return createMapping(docType, true);
+	}
+
+	/**
+	 * Create mapping for document type if not exist.
+	 * 
+	 * @param docType
+	 *            Class of document.
+	 * @param allEnabled
+	 *            False to disable the _all field. Searches query the mapped
+	 *            fields directly, so _all is not needed unless the document has
+	 *            no text or keyword field.
+	 * @return True if mapping is created, false if mapping is already exist.
+	 */
+	public boolean createMapping(Class<?> docType, boolean allEnabled) {
 		Mapping mapping = getMappingFromClass(docType);
 		IndicesAdminClient idc = client.admin().indices();
-		GetMappingsResponse gmr = idc.getMappings(new GetMappingsRequest()).actionGet();
-		ImmutableOpenMap<String, ImmutableOpenMap<String, MappingMetaData>> mappings = gmr.getMappings();
-		if (mappings.containsKey(mapping.getType())) {
-			log.info("Found mapping for class " + docType.getName() + ".");
-			return false;
+		String target = getReadIndex(mapping);
+		GetMappingsResponse gmr = idc.getMappings(new GetMappingsRequest().indices(target).types(mapping.getType()))
+				.actionGet();
+		for (Iterator<ImmutableOpenMap<String, MappingMetaData>> it = gmr.getMappings().valuesIt(); it.hasNext();) {
+			if (it.next().containsKey(mapping.getType())) {
+				log.info("Found mapping for class " + docType.getName() + ".");
+				return false;
+			}
 		}
 		log.info("Mapping not found for class " + docType.getName() + ". Auto-create...");
-		PutMappingResponse pmr = idc.preparePutMapping(index).setType(mapping.getType()).setSource(mapping.getSource())
-				.get();
+		PutMappingResponse pmr = idc.preparePutMapping(target).setType(mapping.getType())
+				.setSource(mapping.getSource(allEnabled)).get();
 		if (!pmr.isAcknowledged()) {
 			throw new RuntimeException("Failed to create mapping for class:" + docType.getName() + ".");
 		}
@@ -244,24 +1700,142 @@ public class SearchableClient implements AutoCloseable {
 	}
 
 	/**
-	 * Create index.
+	 * Check if the _all field is enabled in the existing mapping of type, so
+	 * that a new index of the type keeps the setting. The newest index by name
+	 * wins if indices of alias have different settings.
+	 * 
+	 * @param index
+	 *            Index or alias which has the type.
+	 * @param mapping
+	 *            Mapping of type.
+	 * @return False if _all is disabled, true if enabled or type not found.
+	 */
+	boolean isAllEnabled(String index, Mapping mapping) {
+		IndicesAdminClient idc = client.admin().indices();
+		if (!idc.prepareExists(index).get().isExists()) {
+			return true;
+		}
+		GetMappingsResponse gmr = idc.getMappings(new GetMappingsRequest().indices(index).types(mapping.getType()))
+				.actionGet();
+		String newest = null;
+		boolean enabled = true;
+		for (ObjectObjectCursor<String, ImmutableOpenMap<String, MappingMetaData>> cursor : gmr.getMappings()) {
+			MappingMetaData mmd = cursor.value.get(mapping.getType());
+			if (mmd != null && (newest == null || cursor.key.compareTo(newest) > 0)) {
+				newest = cursor.key;
+				try {
+					enabled = Mapping.isAllEnabled(mmd.sourceAsMap());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+		return enabled;
+	}
+
+	/**
+	 * Create index, and indices of document types which set their own index.
+	 * Rolling document types get the index of current period by rollover().
 	 * 
-	 * @return True if index create ok, false if index is already exist.
+	 * @return True if any index is created, false if all indices already exist.
 	 */
 	public boolean createIndex() {
-		// check index exist:
+		boolean created = createIndex(index, null, null);
+		for (Class<?> docType : docTypes) {
+			Mapping mapping = getMappingFromClass(docType);
+			if (mapping.isRolling()) {
+				created = rollover(docType) || created;
+			} else if (mapping.index != null) {
+				created = createIndex(mapping.index, null, null) || created;
+			}
+		}
+		return created;
+	}
+
+	/**
+	 * Create index of current period for rolling document type if not exist,
+	 * and move the write alias to it. Call it periodically, e.g. every few
+	 * minutes, so that documents are written to the new index soon after a
+	 * period begins.
+	 * 
+	 * @param docType
+	 *            Class of rolling document.
+	 * @return True if write alias is moved to a new index.
+	 */
+	public boolean rollover(Class<?> docType) {
+		Mapping mapping = getMappingFromClass(docType);
+		if (!mapping.isRolling()) {
+			throw new IllegalArgumentException("Class " + docType.getName() + " does not set rollover.");
+		}
+		String name = mapping.rollover.indexName(mapping.index, System.currentTimeMillis());
+		createIndex(name, mapping, mapping.index);
+		String writeAlias = getWriteIndex(mapping);
 		IndicesAdminClient idc = client.admin().indices();
-		IndicesExistsResponse ier = idc.exists(new IndicesExistsRequest(index)).actionGet();
-		if (!ier.isExists()) {
-			log.info("Index not found. Auto-create...");
-			// create index:
-			CreateIndexResponse cir = idc.create(new CreateIndexRequest(index)).actionGet();
-			if (!cir.isAcknowledged()) {
-				throw new RuntimeException("Failed to create index.");
+		GetAliasesResponse gar = idc.prepareGetAliases(writeAlias).get();
+		IndicesAliasesRequestBuilder iarb = idc.prepareAliases();
+		for (ObjectObjectCursor<String, List<AliasMetaData>> cursor : gar.getAliases()) {
+			if (cursor.value.isEmpty()) {
+				continue;
 			}
-			return true;
+			if (cursor.key.equals(name)) {
+				return false;
+			}
+			iarb.removeAlias(cursor.key, writeAlias);
+		}
+		// add and remove in one request so that write alias always exists:
+		if (!iarb.addAlias(name, writeAlias).get().isAcknowledged()) {
+			throw new RuntimeException("Failed to move alias " + writeAlias + " to index " + name + ".");
+		}
+		log.info("Alias " + writeAlias + " is moved to index " + name + ".");
+		return true;
+	}
+
+	/**
+	 * Create index if not exist.
+	 * 
+	 * @param name
+	 *            Index name.
+	 * @param mapping
+	 *            Mapping to create with index, or null.
+	 * @param alias
+	 *            Alias to create with index, or null.
+	 * @return True if index is created.
+	 */
+	boolean createIndex(String name, Mapping mapping, String alias) {
+		IndicesAdminClient idc = client.admin().indices();
+		IndicesExistsResponse ier = idc.exists(new IndicesExistsRequest(name)).actionGet();
+		if (ier.isExists()) {
+			return false;
+		}
+		log.info("Index " + name + " not found. Auto-create...");
+		CreateIndexRequest request = newIndexRequest(name, Collections.emptyMap());
+		if (mapping != null) {
+			// keep _all setting of previous indices of alias:
+			boolean allEnabled = alias == null || isAllEnabled(alias, mapping);
+			request.mapping(mapping.getType(), mapping.getSource(allEnabled));
 		}
-		return false;
+		if (alias != null) {
+			request.alias(new Alias(alias));
+		}
+		CreateIndexResponse cir = idc.create(request).actionGet();
+		if (!cir.isAcknowledged()) {
+			throw new RuntimeException("Failed to create index " + name + ".");
+		}
+		return true;
+	}
+
+	/**
+	 * Prepare request to create index with analysis settings.
+	 * 
+	 * @param name
+	 *            Index name.
+	 * @param settings
+	 *            Other settings of index.
+	 */
+	CreateIndexRequest newIndexRequest(String name, Map<String, Object> settings) {
+		Map<String, Object> all = new HashMap<>(settings);
+		all.put("analysis", Analyzers.createAnalysis(analysis));
+		return new CreateIndexRequest(name).settings(all);
 	}
 
 	@Override
@@ -4,9 +4,85 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface SearchableDocument {
 
+	/**
+	 * Name of index of the document type. If rollover is set, it is the base
+	 * name of rolling indices and the name of read alias.
+	 * 
+	 * @return Default "" to use the index of SearchableClient, or the type
+	 *         name if rollover is set.
+	 */
+	String index() default "";
+
+	/**
+	 * Create a new index for each period, e.g. "tweet-2016.11.05" for daily
+	 * rollover. Documents are written to the index of current period through
+	 * the write alias "tweet-write", and searched through the read alias
+	 * "tweet". Only use it for append-only documents since a document updated
+	 * in a later period is written to a new index. Get and unindex by id look
+	 * up the document in every rolling index by realtime multi get.
+	 * 
+	 * @return Default Rollover.NONE.
+	 */
+	Rollover rollover() default Rollover.NONE;
+
+	enum Rollover {
+
+		/**
+		 * Single index without rollover.
+		 */
+		NONE(null, null),
+
+		/**
+		 * Create an index per day in UTC.
+		 */
+		DAILY("yyyy.MM.dd", ChronoUnit.DAYS),
+
+		/**
+		 * Create an index per month in UTC.
+		 */
+		MONTHLY("yyyy.MM", ChronoUnit.MONTHS);
+
+		final DateTimeFormatter formatter;
+		final ChronoUnit unit;
+
+		Rollover(String pattern, ChronoUnit unit) {
+			this.formatter = pattern == null ? null : DateTimeFormatter.ofPattern(pattern).withZone(ZoneOffset.UTC);
+			this.unit = unit;
+		}
+
+		/**
+		 * Get start of the period which contains time.
+		 */
+		long startOf(long time) {
+			ZonedDateTime dt = Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+			if (unit == ChronoUnit.MONTHS) {
+				dt = dt.withDayOfMonth(1);
+			}
+			return dt.toInstant().toEpochMilli();
+		}
+
+		/**
+		 * Get start of the next period.
+		 */
+		long next(long start) {
+			return Instant.ofEpochMilli(start).atZone(ZoneOffset.UTC).plus(1, unit).toInstant().toEpochMilli();
+		}
+
+		/**
+		 * Get name of index of the period which contains time.
+		 */
+		String indexName(String base, long time) {
+			return base + "-" + formatter.format(Instant.ofEpochMilli(time));
+		}
+	}
 }
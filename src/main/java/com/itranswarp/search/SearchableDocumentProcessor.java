@@ -0,0 +1,268 @@
+package com.itranswarp.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor which validates @SearchableDocument classes at compile
+ * time and writes their names to INDEX_RESOURCE, so that
+ * SearchableClient.init() can load them without scanning the classpath.
+ * 
+ * It is registered as a service of javax.annotation.processing.Processor, so
+ * javac runs it automatically when this jar is on the classpath. Invalid
+ * classes are reported as warnings and still listed in the index, so they fail
+ * at runtime as if they were scanned. Pass -Asearchable.strict=true to javac
+ * to report them as errors and fail the build instead.
+ */
+@SupportedAnnotationTypes("com.itranswarp.search.SearchableDocument")
+@SupportedOptions(SearchableDocumentProcessor.STRICT_OPTION)
+public class SearchableDocumentProcessor extends AbstractProcessor {
+
+	/**
+	 * Resource listing binary names of @SearchableDocument classes, one per
+	 * line.
+	 */
+	public static final String INDEX_RESOURCE = "META-INF/searchable-documents.index";
+
+	/**
+	 * Option to report invalid classes as errors.
+	 */
+	public static final String STRICT_OPTION = "searchable.strict";
+
+	static final Set<String> FIELD_TYPES = new HashSet<>(Arrays.asList("java.lang.String", "int",
+			"java.lang.Integer", "long", "java.lang.Long", "boolean", "java.lang.Boolean", "float", "java.lang.Float",
+			"double", "java.lang.Double"));
+
+	static final Set<String> ROUTING_TYPES = new HashSet<>(
+			Arrays.asList("java.lang.String", "int", "java.lang.Integer", "long", "java.lang.Long"));
+
+	final Set<String> documents = new TreeSet<>();
+
+	boolean strict = false;
+
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		this.strict = Boolean.parseBoolean(processingEnv.getOptions().get(STRICT_OPTION));
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeIndex();
+			return false;
+		}
+		for (Element e : roundEnv.getElementsAnnotatedWith(SearchableDocument.class)) {
+			if (e.getKind() != ElementKind.CLASS) {
+				error(e, "@SearchableDocument can only be used on class.");
+				continue;
+			}
+			TypeElement type = (TypeElement) e;
+			if (validate(type) || !strict) {
+				documents.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check rules which Mapping and BeanAccessor check at runtime.
+	 */
+	boolean validate(TypeElement type) {
+		boolean ok = true;
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+			ok = error(type, "@SearchableDocument class cannot be abstract.");
+		}
+		if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+			ok = error(type, "@SearchableDocument class must be static if it is nested.");
+		}
+		if (!hasDefaultConstructor(type)) {
+			ok = error(type, "@SearchableDocument class must have a constructor without parameters.");
+		}
+		int ids = 0;
+		int routings = 0;
+		for (VariableElement f : fieldsOf(type)) {
+			boolean isId = f.getAnnotation(SearchableId.class) != null;
+			SearchableField sf = f.getAnnotation(SearchableField.class);
+			if (f.getAnnotation(SearchableRouting.class) != null) {
+				routings++;
+				if (sf == null) {
+					ok = error(f,
+							"@SearchableRouting field " + f.getSimpleName() + " must also be a @SearchableField.");
+				} else if (!ROUTING_TYPES.contains(f.asType().toString())
+						|| ("java.lang.String".equals(f.asType().toString()) && !sf.keyword()) || !sf.index()) {
+					ok = error(f, "@SearchableRouting field " + f.getSimpleName()
+							+ " must be an indexed keyword String, int or long.");
+				}
+			}
+			if (!isId && sf == null) {
+				continue;
+			}
+			if (!f.getModifiers().contains(Modifier.PUBLIC)) {
+				warning(f, "Field " + f.getSimpleName() + " is ignored since it is not public.");
+				continue;
+			}
+			if (f.getModifiers().contains(Modifier.FINAL)) {
+				ok = error(f, "Searchable field " + f.getSimpleName() + " cannot be final.");
+			}
+			String fieldType = f.asType().toString();
+			if (isId) {
+				ids++;
+				if (sf != null) {
+					ok = error(f, "Cannot use both @SearchableId and @SearchableField.");
+				}
+				if (!"java.lang.String".equals(fieldType)) {
+					ok = error(f, "@SearchableId field can only be String.");
+				}
+				continue;
+			}
+			if (!FIELD_TYPES.contains(fieldType)) {
+				ok = error(f, "Field " + f.getSimpleName() + " type is unsupported: " + fieldType);
+				continue;
+			}
+			if ((!sf.analyzer().isEmpty() || !sf.searchAnalyzer().isEmpty())
+					&& (!"java.lang.String".equals(fieldType) || sf.keyword())) {
+				ok = error(f, "Field " + f.getSimpleName() + " cannot set analyzer since it is not a text field.");
+			}
+			if (sf.suggest() && !"java.lang.String".equals(fieldType)) {
+				ok = error(f, "Field " + f.getSimpleName() + " cannot set suggest since it is not a String field.");
+			}
+			boolean isString = "java.lang.String".equals(fieldType) || sf.keyword();
+			if (sf.indexOptions() != SearchableField.IndexOptions.DEFAULT) {
+				if (!isString) {
+					ok = error(f, "Field " + f.getSimpleName()
+							+ " cannot set indexOptions since it is not a text or keyword field.");
+				} else if (sf.indexOptions().ordinal() > SearchableField.IndexOptions.FREQS.ordinal()
+						&& sf.keyword()) {
+					ok = error(f, "Field " + f.getSimpleName()
+							+ " cannot index positions or offsets since it is a keyword field.");
+				}
+			}
+		}
+		if (routings > 1) {
+			ok = error(type, "Only one @SearchableRouting is allowed in class: " + type.getQualifiedName());
+		}
+		if (ids == 0) {
+			ok = error(type, "@SearchableId not found in class: " + type.getQualifiedName());
+		} else if (ids > 1) {
+			ok = error(type, "Only one @SearchableId is allowed in class: " + type.getQualifiedName());
+		}
+		return ok;
+	}
+
+	/**
+	 * Get fields of class and its super classes, as Class.getFields() does for
+	 * public fields.
+	 */
+	List<VariableElement> fieldsOf(TypeElement type) {
+		List<VariableElement> fields = ElementFilter.fieldsIn(type.getEnclosedElements());
+		TypeMirror superType = type.getSuperclass();
+		if (superType.getKind() == TypeKind.DECLARED) {
+			TypeElement superElement = (TypeElement) ((DeclaredType) superType).asElement();
+			if (!"java.lang.Object".equals(superElement.getQualifiedName().toString())) {
+				fields.addAll(fieldsOf(superElement));
+			}
+		}
+		return fields;
+	}
+
+	boolean hasDefaultConstructor(TypeElement type) {
+		for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (c.getParameters().isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Write index. Names from previous compilation are kept if the classes
+	 * still exist, so incremental compilation does not lose documents.
+	 */
+	void writeIndex() {
+		Filer filer = processingEnv.getFiler();
+		Elements elements = processingEnv.getElementUtils();
+		Set<String> names = new TreeSet<>(documents);
+		try {
+			FileObject old = filer.getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(old.openInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (!line.isEmpty()) {
+						TypeElement type = elements.getTypeElement(line.replace('$', '.'));
+						if (type != null && type.getAnnotation(SearchableDocument.class) != null) {
+							names.add(line);
+						}
+					}
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			// no previous index
+		}
+		if (names.isEmpty()) {
+			return;
+		}
+		try {
+			FileObject index = filer.createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+			try (Writer writer = index.openWriter()) {
+				for (String name : names) {
+					writer.write(name);
+					writer.write('\n');
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Failed to write " + INDEX_RESOURCE + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Report invalid element as error in strict mode, otherwise as warning.
+	 */
+	boolean error(Element e, String message) {
+		processingEnv.getMessager().printMessage(strict ? Diagnostic.Kind.ERROR : Diagnostic.Kind.WARNING, message,
+				e);
+		return false;
+	}
+
+	void warning(Element e, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, e);
+	}
+}
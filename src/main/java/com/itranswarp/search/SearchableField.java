@@ -9,6 +9,19 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface SearchableField {
 
+	/**
+	 * Analyzer which indexes CJK text as overlapping bigrams, so phrases match
+	 * by bigram positions instead of single characters. Single characters are
+	 * indexed in a "unigram" subfield to match single-character words.
+	 */
+	String CJK_BIGRAM = "cjk_bigram";
+
+	/**
+	 * Analyzer which indexes prefixes of words for search-as-you-type, and
+	 * searches by whole words.
+	 */
+	String EDGE_NGRAM = "edge_ngram";
+
 	/**
 	 * Should the field be searchable.
 	 * 
@@ -24,4 +37,87 @@ public @interface SearchableField {
 	 * @return Boosting value, default 1.0F.
 	 */
 	float boost() default 1.0F;
+
+	/**
+	 * Should the field store doc values for sorting and aggregations. Text
+	 * fields never have doc values.
+	 * 
+	 * @return Default true.
+	 */
+	boolean docValues() default true;
+
+	/**
+	 * Should the text field store norms for scoring. Disable for text fields
+	 * used only for filtering. Keyword fields never have norms.
+	 * 
+	 * @return Default true.
+	 */
+	boolean norms() default true;
+
+	/**
+	 * What information is added to the inverted index of a text or keyword
+	 * field.
+	 * 
+	 * @return Default IndexOptions.DEFAULT.
+	 */
+	IndexOptions indexOptions() default IndexOptions.DEFAULT;
+
+	/**
+	 * Analyzer of text field, e.g. CJK_BIGRAM, EDGE_NGRAM, a built-in analyzer
+	 * of ES, or a custom analyzer set by SearchableClient.setAnalysis().
+	 * 
+	 * @return Default "" to use the standard analyzer.
+	 */
+	String analyzer() default "";
+
+	/**
+	 * Analyzer of search words of text field.
+	 * 
+	 * @return Default "" to use the same analyzer as index, except that
+	 *         EDGE_NGRAM searches by whole words.
+	 */
+	String searchAnalyzer() default "";
+
+	/**
+	 * Should the value of String field be an input of completion suggester,
+	 * used by SearchableClient.suggest().
+	 * 
+	 * @return Default false.
+	 */
+	boolean suggest() default false;
+
+	/**
+	 * Should the field value be stored separately from _source.
+	 * 
+	 * @return Default false.
+	 */
+	boolean store() default false;
+
+	enum IndexOptions {
+
+		/**
+		 * Use default of ES: positions for text and docs for keyword.
+		 */
+		DEFAULT,
+
+		/**
+		 * Only doc number is indexed.
+		 */
+		DOCS,
+
+		/**
+		 * Doc number and term frequencies are indexed.
+		 */
+		FREQS,
+
+		/**
+		 * Doc number, term frequencies and term positions are indexed.
+		 */
+		POSITIONS,
+
+		/**
+		 * Doc number, term frequencies, positions and offsets are indexed.
+		 */
+		OFFSETS;
+	}
 }
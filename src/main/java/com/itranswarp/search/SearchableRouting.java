@@ -0,0 +1,18 @@
+package com.itranswarp.search;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Use value of the field as routing key, so that documents with the same
+ * value, e.g. a tenant id, are stored in the same shard, and a search with
+ * routing only hits that shard. The field must also be a keyword or integer
+ * @SearchableField. Routing is required to get or unindex a document by id.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SearchableRouting {
+
+}
@@ -0,0 +1,74 @@
+package com.itranswarp.search;
+
+/**
+ * A search which took at least the slow query threshold set by
+ * SearchableClient.setSlowQueryThreshold().
+ */
+public class SlowQuery {
+
+	/**
+	 * Document type.
+	 */
+	public final String type;
+
+	/**
+	 * Search words, or null if the query has no text.
+	 */
+	public final String words;
+
+	/**
+	 * Source of search request as JSON, including the query generated from
+	 * words.
+	 */
+	public final String query;
+
+	/**
+	 * Milliseconds reported by ES as took.
+	 */
+	public final long took;
+
+	/**
+	 * Milliseconds between sending request and receiving response.
+	 */
+	public final long elapsed;
+
+	public final int totalShards;
+
+	public final int successfulShards;
+
+	public final int failedShards;
+
+	public final long totalHits;
+
+	/**
+	 * Number of hits returned in response.
+	 */
+	public final int hits;
+
+	/**
+	 * Profile results as JSON, or null if searches are not profiled.
+	 */
+	public final String profile;
+
+	public SlowQuery(String type, String words, String query, long took, long elapsed, int totalShards,
+			int successfulShards, int failedShards, long totalHits, int hits, String profile) {
+		this.type = type;
+		this.words = words;
+		this.query = query;
+		this.took = took;
+		this.elapsed = elapsed;
+		this.totalShards = totalShards;
+		this.successfulShards = successfulShards;
+		this.failedShards = failedShards;
+		this.totalHits = totalHits;
+		this.hits = hits;
+		this.profile = profile;
+	}
+
+	@Override
+	public String toString() {
+		return "SlowQuery(" + type + ": words=" + words + ", took=" + took + "ms, elapsed=" + elapsed + "ms, shards="
+				+ successfulShards + "/" + totalShards + ", failedShards=" + failedShards + ", hits=" + hits + "/"
+				+ totalHits + ", query=" + query + (profile == null ? "" : ", profile=" + profile) + ")";
+	}
+}
@@ -10,57 +10,102 @@ class SplitUtil {
 	static final int UNICODE = 2;
 	static final int SEPARATOR = 3;
 
+	/**
+	 * Max code points of a unicode phrase. Longer phrase is truncated.
+	 */
+	static final int MAX_PHRASE_LENGTH = 7;
+
 	static final String UNICODE_SEPARATOR = "，。？！：；、·～…（）《》【】「」／“”　";
 	static final Span[] EMPTY_SPANS = new Span[0];
 
-	public static Span[] split(String text) {
-		text = text.trim();
-		if (text.isEmpty()) {
-			return EMPTY_SPANS;
+	/**
+	 * Char type of every char in BMP. Surrogates are UNICODE so a surrogate
+	 * pair is never split into different spans.
+	 */
+	static final byte[] CHAR_TYPES = new byte[Character.MAX_VALUE + 1];
+
+	static {
+		for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+			CHAR_TYPES[ch] = (byte) getType((char) ch);
 		}
+	}
+
+	/**
+	 * Receive spans split from text without creating intermediate strings.
+	 */
+	@FunctionalInterface
+	interface SpanSink {
+
+		/**
+		 * Accept a span.
+		 * 
+		 * @param text
+		 *            The text being split.
+		 * @param start
+		 *            Start index of span, inclusive.
+		 * @param end
+		 *            End index of span, exclusive.
+		 * @param phrase
+		 *            True if span is a phrase, false if span is a word.
+		 */
+		void accept(CharSequence text, int start, int end, boolean phrase);
+	}
+
+	public static Span[] split(String text) {
 		List<Span> list = new ArrayList<>();
-		StringBuilder buffer = new StringBuilder(10);
+		split(text, (s, start, end, phrase) -> {
+			String t = s.subSequence(start, end).toString();
+			list.add(phrase ? new Phrase(t) : new Word(t));
+		});
+		return list.isEmpty() ? EMPTY_SPANS : list.toArray(new Span[list.size()]);
+	}
+
+	/**
+	 * Split text and emit spans to sink.
+	 * 
+	 * @param text
+	 *            Text to split.
+	 * @param sink
+	 *            SpanSink to receive spans.
+	 */
+	static void split(CharSequence text, SpanSink sink) {
+		final byte[] types = CHAR_TYPES;
+		final int length = text.length();
 		int lastType = START;
-		for (int i = 0; i < text.length(); i++) {
-			char ch = text.charAt(i);
-			int type = getType(ch);
-			switch (type) {
-			case ENGLISH:
-				if (lastType == UNICODE) {
-					addAndClearBuffer(list, buffer, lastType);
-				}
-				buffer.append(ch);
-				break;
-			case UNICODE:
-				if (lastType == ENGLISH) {
-					addAndClearBuffer(list, buffer, lastType);
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			int type = types[text.charAt(i)];
+			if (type != lastType) {
+				if (lastType == ENGLISH || lastType == UNICODE) {
+					emit(text, start, i, lastType, sink);
 				}
-				buffer.append(ch);
-				break;
-			case SEPARATOR:
-				if (buffer.length() > 0) {
-					addAndClearBuffer(list, buffer, lastType);
-				}
-				break;
-			default:
-				throw new RuntimeException("Should not fall to default.");
+				lastType = type;
+				start = i;
 			}
-			lastType = type;
 		}
-		// add last term:
-		if (buffer.length() > 0) {
-			addAndClearBuffer(list, buffer, lastType);
+		// emit last span:
+		if (lastType == ENGLISH || lastType == UNICODE) {
+			emit(text, start, length, lastType, sink);
 		}
-		return list.toArray(new Span[list.size()]);
 	}
 
-	static void addAndClearBuffer(List<Span> list, StringBuilder buffer, int lastType) {
-		String s = buffer.toString();
-		if (lastType == UNICODE && s.length() > 7) {
-			s = s.substring(0, 7);
+	static void emit(CharSequence text, int start, int end, int type, SpanSink sink) {
+		if (type == ENGLISH) {
+			sink.accept(text, start, end, false);
+			return;
+		}
+		// truncate unicode phrase by code points:
+		int n = 0;
+		int i = start;
+		while (i < end && n < MAX_PHRASE_LENGTH) {
+			char ch = text.charAt(i);
+			i++;
+			if (Character.isHighSurrogate(ch) && i < end && Character.isLowSurrogate(text.charAt(i))) {
+				i++;
+			}
+			n++;
 		}
-		list.add(lastType == ENGLISH || s.length() == 1 ? new Word(s) : new Phrase(s));
-		buffer.delete(0, buffer.length());
+		sink.accept(text, start, i, n > 1);
 	}
 
 	static int getType(char ch) {
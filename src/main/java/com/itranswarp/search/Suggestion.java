@@ -0,0 +1,30 @@
+package com.itranswarp.search;
+
+/**
+ * A suggestion returned by completion suggester, without the document source.
+ */
+public class Suggestion {
+
+	/**
+	 * Id of document.
+	 */
+	public final String id;
+
+	/**
+	 * The suggest field value which matches the prefix.
+	 */
+	public final String text;
+
+	public final float score;
+
+	public Suggestion(String id, String text, float score) {
+		this.id = id;
+		this.text = text;
+		this.score = score;
+	}
+
+	@Override
+	public String toString() {
+		return "Suggestion(" + id + ": " + text + ")";
+	}
+}
@@ -0,0 +1,72 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class ClassUtilTest {
+
+	static final AtomicBoolean initialized = new AtomicBoolean(false);
+
+	static class NotInitialized {
+		static {
+			initialized.set(true);
+		}
+	}
+
+	@Test
+	public void testFind() {
+		// index is written by SearchableDocumentProcessor when compiling tests:
+		List<Class<?>> classes = ClassUtil.find("com.itranswarp.search", SearchableDocument.class,
+				SearchableDocumentProcessor.INDEX_RESOURCE);
+		assertEquals(Arrays.asList(Event.class, Tweet.class), classes);
+		assertTrue(ClassUtil.find("com.itranswarp.other", SearchableDocument.class,
+				SearchableDocumentProcessor.INDEX_RESOURCE).isEmpty());
+	}
+
+	@Test
+	public void testFindInRootWithoutIndex() throws Exception {
+		ClassLoader cl = ClassUtilTest.class.getClassLoader();
+		URL testClasses = Tweet.class.getResource("Tweet.class");
+		URL root = new URL(testClasses.toString().substring(0, testClasses.toString().lastIndexOf('/')));
+		// root is scanned if it has no index:
+		List<Class<?>> classes = ClassUtil.find(cl, "com.itranswarp.search", SearchableDocument.class,
+				SearchableDocumentProcessor.INDEX_RESOURCE, Arrays.asList(root), Collections.emptyList());
+		assertEquals(Arrays.asList(Event.class, Tweet.class), classes);
+	}
+
+	@Test
+	public void testRootOf() throws Exception {
+		assertEquals("file:/app/classes/", ClassUtil.rootOf(new URL("file:/app/classes/com/example/"), "com/example"));
+		assertEquals("jar:file:/app/lib.jar!/",
+				ClassUtil.rootOf(new URL("jar:file:/app/lib.jar!/com/example"), "com/example"));
+		assertEquals("jar:file:/app/lib.jar!/",
+				ClassUtil.rootOf(new URL("jar:file:/app/lib.jar!/META-INF/x.index"), "META-INF/x.index"));
+	}
+
+	@Test
+	public void testScan() {
+		List<Class<?>> classes = ClassUtil.scan("com.itranswarp.search", SearchableDocument.class);
+		assertEquals(Arrays.asList(Event.class, Tweet.class), classes);
+		assertFalse(initialized.get());
+	}
+
+	@Test
+	public void testRefersTo() throws Exception {
+		byte[] descriptor = "Lcom/itranswarp/search/SearchableDocument;".getBytes(StandardCharsets.UTF_8);
+		try (InputStream input = Tweet.class.getResourceAsStream("Tweet.class")) {
+			assertTrue(ClassUtil.refersTo(input, descriptor));
+		}
+		try (InputStream input = SplitUtil.class.getResourceAsStream("SplitUtil.class")) {
+			assertFalse(ClassUtil.refersTo(input, descriptor));
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.itranswarp.search;
+
+@SearchableDocument(rollover = SearchableDocument.Rollover.DAILY)
+public class Event {
+
+	public Event() {
+	}
+
+	public Event(String id, String message, long createdAt) {
+		this.id = id;
+		this.message = message;
+		this.createdAt = createdAt;
+	}
+
+	@SearchableId
+	public String id;
+
+	@SearchableField
+	public String message;
+
+	@SearchableField
+	public long createdAt;
+}
@@ -0,0 +1,46 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import com.itranswarp.search.HistogramMetrics.Phase;
+import com.itranswarp.search.MetricsListener.Operation;
+
+public class HistogramMetricsTest {
+
+	HistogramMetrics metrics = new HistogramMetrics();
+
+	@Test
+	public void testRequest() {
+		metrics.onRequest(Operation.SEARCH, "tweet", 3000000, 5000000, 2000000);
+		metrics.onRequest(Operation.SEARCH, "user", 1000000, 1000000, 1000000);
+		Histogram total = metrics.getHistogram(Operation.SEARCH, "tweet", Phase.TOTAL);
+		assertEquals(1, total.getTotalCount());
+		assertEquals(10000000, total.getMaxValue(), 10000);
+		assertEquals(5000000, metrics.getHistogram(Operation.SEARCH, "tweet", Phase.TOOK).getMaxValue(), 5000);
+		// all types:
+		assertEquals(2, metrics.getHistogram(Operation.SEARCH, null, Phase.HYDRATE).getTotalCount());
+		assertNull(metrics.getHistogram(Operation.GET, "tweet", Phase.TOTAL));
+		assertTrue(metrics.report().contains("SEARCH/tweet/TOTAL count=1 "));
+	}
+
+	@Test
+	public void testCounters() {
+		metrics.onError(Operation.GET, "tweet", new RuntimeException());
+		metrics.onHits("tweet", 100, 20);
+		metrics.onBulk(1000, 2, 3);
+		metrics.onBulk(1000, 0, 1);
+		assertEquals(1, metrics.getErrors(Operation.GET, "tweet"));
+		assertEquals(1, metrics.getErrors(Operation.GET, null));
+		assertEquals(100, metrics.getTotalHits("tweet"));
+		assertEquals(20, metrics.getTransferredHits(null));
+		assertEquals(2000, metrics.getBulkActions());
+		assertEquals(2, metrics.getBulkFailed());
+		assertEquals(1, metrics.getInFlightBulkRequests());
+		assertEquals(3, metrics.getMaxInFlightBulkRequests());
+		metrics.reset();
+		assertEquals(0, metrics.getBulkActions());
+	}
+}
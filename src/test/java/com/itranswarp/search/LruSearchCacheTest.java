@@ -0,0 +1,124 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class LruSearchCacheTest {
+
+	static final String[] NO_FIELDS = new String[0];
+
+	@Test
+	public void testKeyNormalized() {
+		SearchCacheKey k1 = key("Hello World，你好");
+		SearchCacheKey k2 = key(" Hello  World 你好 ");
+		assertEquals(k1, k2);
+		assertEquals(k1.hashCode(), k2.hashCode());
+		assertNotEquals(k1, key("hello world 你好"));
+		assertNotEquals(k1, new SearchCacheKey(Tweet.class, SplitUtil.split("Hello World 你好"), true, 0.5f, 100,
+				NO_FIELDS));
+	}
+
+	@Test
+	public void testKeyImmutable() {
+		String[] fields = { "name" };
+		SearchCacheKey k = new SearchCacheKey(Tweet.class, SplitUtil.split("Hello 你好"), true, 0.5f, 100, fields);
+		fields[0] = "content";
+		k.getFields()[0] = "content";
+		assertArrayEquals(new String[] { "name" }, k.getFields());
+		assertEquals("WHello\nP你好\n", k.getSpans());
+		assertEquals("com.itranswarp.search.Tweet\ntrue\n0.5\n100\nname\nWHello\nP你好\n", k.toString());
+	}
+
+	@Test
+	public void testGetAndPut() {
+		LruSearchCache cache = new LruSearchCache(10, 60000);
+		assertNull(cache.get(key("hello")));
+		put(cache, key("hello"), results("a"));
+		assertEquals(Arrays.asList("a"), cache.get(key("hello")).results);
+		SearchCacheStats stats = cache.getStats();
+		assertEquals(1, stats.hits);
+		assertEquals(1, stats.misses);
+		assertEquals(0, stats.evictions);
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() {
+		LruSearchCache cache = new LruSearchCache(2, 60000);
+		put(cache, key("a"), results("a"));
+		put(cache, key("b"), results("b"));
+		assertNotNull(cache.get(key("a")));
+		put(cache, key("c"), results("c"));
+		assertNull(cache.get(key("b")));
+		assertNotNull(cache.get(key("a")));
+		assertNotNull(cache.get(key("c")));
+		assertEquals(1, cache.getStats().evictions);
+	}
+
+	@Test
+	public void testExpired() throws Exception {
+		LruSearchCache cache = new LruSearchCache(10, 10);
+		put(cache, key("a"), results("a"));
+		Thread.sleep(50);
+		assertNull(cache.get(key("a")));
+		assertEquals(1, cache.getStats().evictions);
+	}
+
+	@Test
+	public void testInvalidate() {
+		LruSearchCache cache = new LruSearchCache(10, 60000);
+		SearchCacheKey other = new SearchCacheKey(String.class, SplitUtil.split("a"), false, 0.5f, 100, NO_FIELDS);
+		put(cache, key("a"), results("a"));
+		put(cache, other, results("s"));
+		cache.invalidate(Tweet.class);
+		assertNull(cache.get(key("a")));
+		assertNotNull(cache.get(other));
+		// put again after refresh:
+		cache.setRefreshInterval(0);
+		put(cache, key("a"), results("a2"));
+		assertEquals(Arrays.asList("a2"), cache.get(key("a")).results);
+	}
+
+	@Test
+	public void testInvalidateBetweenGetAndPut() {
+		LruSearchCache cache = new LruSearchCache(10, 60000);
+		cache.setRefreshInterval(0);
+		assertNull(cache.get(key("a")));
+		long generation = cache.getGeneration(Tweet.class);
+		// document indexed while searching:
+		cache.invalidate(Tweet.class);
+		cache.put(key("a"), results("stale"), generation);
+		assertNull(cache.get(key("a")));
+		// next search starts after invalidation:
+		generation = cache.getGeneration(Tweet.class);
+		cache.put(key("a"), results("a"), generation);
+		assertEquals(Arrays.asList("a"), cache.get(key("a")).results);
+	}
+
+	@Test
+	public void testNotCachedBeforeRefresh() throws Exception {
+		LruSearchCache cache = new LruSearchCache(10, 60000);
+		cache.setRefreshInterval(50);
+		cache.invalidate(Tweet.class);
+		assertEquals(-1, cache.getGeneration(Tweet.class));
+		put(cache, key("a"), results("maybe stale"));
+		assertNull(cache.get(key("a")));
+		Thread.sleep(100);
+		put(cache, key("a"), results("a"));
+		assertEquals(Arrays.asList("a"), cache.get(key("a")).results);
+	}
+
+	void put(LruSearchCache cache, SearchCacheKey key, SearchResults<?> results) {
+		cache.put(key, results, cache.getGeneration(key.getDocumentClass()));
+	}
+
+	SearchCacheKey key(String words) {
+		return new SearchCacheKey(Tweet.class, SplitUtil.split(words), false, 0.5f, 100, NO_FIELDS);
+	}
+
+	SearchResults<String> results(String s) {
+		return new SearchResults<>(1, Arrays.asList(s));
+	}
+}
@@ -0,0 +1,69 @@
+package com.itranswarp.search;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare generated accessors with reflection when reading and hydrating beans,
+ * and serializing through a map with streaming serialization.
+ * 
+ * Run by: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.itranswarp.search.MappingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+	@Param({ "generated", "reflection" })
+	String accessor;
+
+	Mapping mapping;
+	Tweet tweet;
+	Map<String, Object> source;
+
+	@Setup
+	public void setup() {
+		mapping = new Mapping(Tweet.class, "reflection".equals(accessor));
+		tweet = new Tweet("t-1", "Michael Liao", Tweet.STYLE_A, true, "iPhone 7 Plus", "Hello, world!",
+				System.currentTimeMillis());
+		source = mapping.getSource(tweet);
+	}
+
+	@Benchmark
+	public Map<String, Object> getSource() {
+		return mapping.getSource(tweet);
+	}
+
+	@Benchmark
+	public BytesReference getSourceAsBytes() {
+		return mapping.getSourceAsBytes(tweet);
+	}
+
+	@Benchmark
+	public Tweet createBean() {
+		return mapping.createBean("t-1", source);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(MappingBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,389 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MappingTest {
+
+	@Test
+	public void testGeneratedAccessor() {
+		Mapping mapping = new Mapping(Tweet.class);
+		assertTrue(mapping.accessor instanceof GeneratedBeanAccessor);
+		assertRoundTrip(mapping);
+	}
+
+	@Test
+	public void testReflectionAccessor() {
+		Mapping mapping = new Mapping(Tweet.class, true);
+		assertTrue(mapping.accessor instanceof ReflectionBeanAccessor);
+		assertRoundTrip(mapping);
+	}
+
+	@Test
+	public void testCreateBeanWithJsonNumbers() {
+		Map<String, Object> props = new HashMap<>();
+		props.put("name", "Bob");
+		props.put("style", Long.valueOf(Tweet.STYLE_B));
+		props.put("createdAt", Integer.valueOf(123));
+		for (Mapping mapping : new Mapping[] { new Mapping(Tweet.class), new Mapping(Tweet.class, true) }) {
+			Tweet t = mapping.createBean("t-2", props);
+			assertEquals("t-2", t.id);
+			assertEquals("Bob", t.name);
+			assertEquals(Tweet.STYLE_B, t.style);
+			assertFalse(t.gender);
+			assertNull(t.via);
+			assertEquals(123L, t.createdAt);
+		}
+	}
+
+	@Test
+	public void testSourceAsBytes() {
+		Tweet t = new Tweet("t-3", "小明", Tweet.STYLE_A, true, null, "好消息 \"quoted\"", 1234567890123L);
+		for (Mapping mapping : new Mapping[] { new Mapping(Tweet.class), new Mapping(Tweet.class, true) }) {
+			Map<String, Object> parsed = JsonUtil.parseAsMap(mapping.getSourceAsBytes(t).utf8ToString());
+			assertEquals(6, parsed.size());
+			assertTrue(parsed.containsKey("via"));
+			Tweet copy = mapping.createBean("t-3", parsed);
+			assertEquals(t.toString(), copy.toString());
+		}
+	}
+
+	@Test
+	public void testProjection() {
+		Mapping mapping = new Mapping(Tweet.class);
+		assertNull(mapping.project());
+		Tweet t = new Tweet("t-4", "Michael Liao", Tweet.STYLE_A, true, "iPhone 7 Plus", "Hello, world!", 123L);
+		Tweet copy = mapping.createBean("t-4", mapping.getSource(t), mapping.project("name", "createdAt"));
+		assertEquals("t-4", copy.id);
+		assertEquals("Michael Liao", copy.name);
+		assertEquals(123L, copy.createdAt);
+		assertNull(copy.content);
+		assertNull(copy.via);
+		assertEquals(0, copy.style);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testProjectionWithUnknownField() {
+		new Mapping(Tweet.class).project("name", "title");
+	}
+
+	@Test
+	public void testQueryFields() {
+		Mapping mapping = new Mapping(Tweet.class);
+		assertEquals(2, mapping.textFields.size());
+		assertEquals(5.0f, mapping.textFields.get("name"), 0.0f);
+		assertEquals(1.0f, mapping.textFields.get("content"), 0.0f);
+		assertEquals(3, mapping.wordFields.size());
+		assertTrue(mapping.wordFields.containsKey("via"));
+		assertFalse(mapping.getSource().contains("_all"));
+		Map<String, Object> source = JsonUtil.parseAsMap(mapping.getSource(false));
+		assertEquals(Collections.singletonMap("enabled", false), source.get("_all"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFieldOptions() {
+		Mapping mapping = new Mapping(Article.class);
+		Map<String, Object> props = (Map<String, Object>) JsonUtil.parseAsMap(mapping.getSource()).get("properties");
+		Map<String, Object> title = (Map<String, Object>) props.get("title");
+		assertEquals("text", title.get("type"));
+		assertFalse(title.containsKey("index"));
+		assertFalse(title.containsKey("doc_values"));
+		Map<String, Object> body = (Map<String, Object>) props.get("body");
+		assertEquals(false, body.get("index"));
+		assertEquals(true, body.get("store"));
+		Map<String, Object> tag = (Map<String, Object>) props.get("tag");
+		assertEquals(false, tag.get("norms"));
+		assertEquals("docs", tag.get("index_options"));
+		Map<String, Object> views = (Map<String, Object>) props.get("views");
+		assertEquals(false, views.get("doc_values"));
+		// body is not searchable:
+		assertEquals(2, mapping.textFields.size());
+		assertFalse(mapping.textFields.containsKey("body"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidIndexOptions() {
+		new Mapping(InvalidArticle.class);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAnalyzers() {
+		Mapping mapping = new Mapping(ChineseArticle.class);
+		Map<String, Object> props = (Map<String, Object>) JsonUtil.parseAsMap(mapping.getSource()).get("properties");
+		Map<String, Object> title = (Map<String, Object>) props.get("title");
+		assertEquals(SearchableField.CJK_BIGRAM, title.get("analyzer"));
+		assertFalse(title.containsKey("search_analyzer"));
+		Map<String, Object> unigram = (Map<String, Object>) ((Map<String, Object>) title.get("fields")).get("unigram");
+		assertEquals(Analyzers.CJK_UNIGRAM, unigram.get("analyzer"));
+		Map<String, Object> prefix = (Map<String, Object>) props.get("prefix");
+		assertEquals(SearchableField.EDGE_NGRAM, prefix.get("analyzer"));
+		assertEquals(Analyzers.EDGE_NGRAM_SEARCH, prefix.get("search_analyzer"));
+		// phrases query bigram and standard fields, words query all fields:
+		assertEquals(new HashSet<>(Arrays.asList("title", "content")), mapping.textFields.keySet());
+		assertEquals(3, mapping.wordFields.size());
+		// single characters query unigram subfield instead of bigram field:
+		assertEquals(new HashSet<>(Arrays.asList("title.unigram", "prefix", "content")),
+				mapping.charFields.keySet());
+	}
+
+	@Test
+	public void testIsAllEnabled() {
+		Mapping mapping = new Mapping(Tweet.class);
+		assertTrue(Mapping.isAllEnabled(JsonUtil.parseAsMap(mapping.getSource())));
+		assertFalse(Mapping.isAllEnabled(JsonUtil.parseAsMap(mapping.getSource(false))));
+		assertTrue(Mapping.isAllEnabled(Collections.singletonMap("_all", Collections.singletonMap("enabled", true))));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAnalyzerOnKeywordField() {
+		new Mapping(InvalidChineseArticle.class);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAnalysis() {
+		Map<String, Object> custom = Analyzers.analyzer("whitespace", "lowercase");
+		Map<String, Object> analysis = Analyzers
+				.createAnalysis(Collections.singletonMap("analyzer", Collections.singletonMap("lower", custom)));
+		Map<String, Object> analyzers = (Map<String, Object>) analysis.get("analyzer");
+		assertTrue(analyzers.containsKey(SearchableField.CJK_BIGRAM));
+		assertTrue(analyzers.containsKey(SearchableField.EDGE_NGRAM));
+		assertEquals(custom, analyzers.get("lower"));
+		assertTrue(((Map<String, Object>) analysis.get("filter")).containsKey(Analyzers.EDGE_NGRAM_FILTER));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSuggest() throws Exception {
+		Mapping mapping = new Mapping(Product.class);
+		assertEquals("product_suggest", mapping.suggestField);
+		Map<String, Object> props = (Map<String, Object>) JsonUtil.parseAsMap(mapping.getSource()).get("properties");
+		assertEquals("completion", ((Map<String, Object>) props.get("product_suggest")).get("type"));
+		Product p = new Product();
+		p.id = "p-1";
+		p.name = "iPhone";
+		p.brand = null;
+		Map<String, Object> source = mapping.getSource(p);
+		assertEquals(Collections.singletonMap("input", Arrays.asList("iPhone")), source.get("product_suggest"));
+		Map<String, Object> json = JsonUtil.parseAsMap(mapping.getSourceAsBytes(p).utf8ToString());
+		assertEquals(source.get("product_suggest"), json.get("product_suggest"));
+		// completion field is ignored when creating bean:
+		Product bean = mapping.createBean("p-1", json);
+		assertEquals("iPhone", bean.name);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSuggestOnNumericField() {
+		new Mapping(InvalidProduct.class);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRouting() {
+		Mapping mapping = new Mapping(Order.class);
+		assertEquals("tenant", mapping.routingField);
+		Map<String, Object> routing = (Map<String, Object>) JsonUtil.parseAsMap(mapping.getSource()).get("_routing");
+		assertEquals(Boolean.TRUE, routing.get("required"));
+		Order order = new Order();
+		order.id = "o-1";
+		order.tenant = "t-1";
+		assertEquals("t-1", mapping.getRouting(order));
+		assertNull(new Mapping(Tweet.class).getRouting(new Tweet()));
+		assertFalse(JsonUtil.parseAsMap(new Mapping(Tweet.class).getSource()).containsKey("_routing"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullRouting() {
+		new Mapping(Order.class).getRouting(new Order());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRoutingOnTextField() {
+		new Mapping(InvalidOrder.class);
+	}
+
+	@Test
+	public void testGeneratedAccessorOfAllTypes() {
+		Mapping mapping = new Mapping(Measure.class);
+		assertTrue(mapping.accessor instanceof GeneratedBeanAccessor);
+		Map<String, Object> props = new HashMap<>();
+		props.put("count", 3);
+		props.put("total", 12345678901L);
+		props.put("valid", true);
+		props.put("ratio", 0.5);
+		props.put("score", 1.25);
+		props.put("boxedCount", 7);
+		props.put("boxedRatio", 0.75);
+		props.put("unit", "cm");
+		Measure m = mapping.createBean("m-1", props);
+		assertEquals("m-1", m.id);
+		assertEquals(3, m.count);
+		assertEquals(12345678901L, m.total);
+		assertTrue(m.valid);
+		assertEquals(0.5f, m.ratio, 0.0f);
+		assertEquals(1.25, m.score, 0.0);
+		assertEquals(Integer.valueOf(7), m.boxedCount);
+		assertEquals(Float.valueOf(0.75f), m.boxedRatio);
+		assertEquals("cm", m.unit);
+		Map<String, Object> source = mapping.getSource(m);
+		assertEquals(Long.valueOf(12345678901L), source.get("total"));
+		assertEquals(Float.valueOf(0.5f), source.get("ratio"));
+		assertEquals(Boolean.TRUE, source.get("valid"));
+		String json = mapping.getSourceAsBytes(m).utf8ToString();
+		assertTrue(json.contains("\"total\":12345678901"));
+		assertTrue(json.contains("\"ratio\":0.5"));
+		assertTrue(json.contains("\"valid\":true"));
+		props.put("boxedCount", null);
+		props.put("count", null);
+		m = mapping.createBean("m-2", props);
+		assertNull(m.boxedCount);
+		assertEquals(0, m.count);
+	}
+
+	public static class Measure {
+
+		@SearchableId
+		public String id;
+
+		@SearchableField
+		public int count;
+
+		@SearchableField
+		public long total;
+
+		@SearchableField
+		public boolean valid;
+
+		@SearchableField
+		public float ratio;
+
+		@SearchableField
+		public double score;
+
+		@SearchableField
+		public Integer boxedCount;
+
+		@SearchableField
+		public Float boxedRatio;
+
+		@SearchableField(keyword = true)
+		public String unit;
+	}
+
+	public static class Order {
+
+		@SearchableId
+		public String id;
+
+		@SearchableRouting
+		@SearchableField(keyword = true)
+		public String tenant;
+
+		@SearchableField
+		public String title;
+	}
+
+	public static class InvalidOrder {
+
+		@SearchableId
+		public String id;
+
+		@SearchableRouting
+		@SearchableField
+		public String tenant;
+	}
+
+	public static class Product {
+
+		@SearchableId
+		public String id;
+
+		@SearchableField(suggest = true)
+		public String name;
+
+		@SearchableField(keyword = true, suggest = true)
+		public String brand;
+	}
+
+	public static class InvalidProduct {
+
+		@SearchableId
+		public String id;
+
+		@SearchableField(suggest = true)
+		public long price;
+	}
+
+	public static class Article {
+
+		@SearchableId
+		public String id;
+
+		@SearchableField
+		public String title;
+
+		@SearchableField(index = false, store = true)
+		public String body;
+
+		@SearchableField(norms = false, indexOptions = SearchableField.IndexOptions.DOCS)
+		public String tag;
+
+		@SearchableField(docValues = false)
+		public long views;
+	}
+
+	public static class InvalidArticle {
+
+		@SearchableId
+		public String id;
+
+		@SearchableField(indexOptions = SearchableField.IndexOptions.DOCS)
+		public long views;
+	}
+
+	public static class ChineseArticle {
+
+		@SearchableId
+		public String id;
+
+		@SearchableField(analyzer = SearchableField.CJK_BIGRAM)
+		public String title;
+
+		@SearchableField(analyzer = SearchableField.EDGE_NGRAM)
+		public String prefix;
+
+		@SearchableField
+		public String content;
+	}
+
+	public static class InvalidChineseArticle {
+
+		@SearchableId
+		public String id;
+
+		@SearchableField(keyword = true, analyzer = SearchableField.CJK_BIGRAM)
+		public String tag;
+	}
+
+	void assertRoundTrip(Mapping mapping) {
+		Tweet t1 = new Tweet("t-1", "Michael Liao", Tweet.STYLE_A, true, "iPhone 7 Plus", "Hello, world!", 1234567890123L);
+		assertEquals("t-1", mapping.getId(t1));
+		Map<String, Object> source = mapping.getSource(t1);
+		assertEquals(6, source.size());
+		assertEquals("Michael Liao", source.get("name"));
+		assertEquals(Tweet.STYLE_A, source.get("style"));
+		assertEquals(Boolean.TRUE, source.get("gender"));
+		assertEquals(1234567890123L, source.get("createdAt"));
+		Tweet t2 = mapping.createBean("t-1", source);
+		assertEquals(t1.toString(), t2.toString());
+	}
+}
@@ -0,0 +1,56 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.Test;
+
+public class MultiSearchTest {
+
+	SearchableClient client = new SearchableClient();
+	Mapping mapping = new Mapping(Tweet.class);
+
+	SearchQuery<Tweet> query() {
+		return new SearchQuery<>(client, mapping);
+	}
+
+	@Test
+	public void testFailureIsIsolated() throws Exception {
+		MultiSearch ms = new MultiSearch(client, null);
+		CompletableFuture<SearchResults<Tweet>> first = ms.add(query().text("trump"));
+		CompletableFuture<SearchResults<Tweet>> second = ms.add(query().text("hillary"));
+		assertEquals(2, ms.size());
+		SearchResponse ok = new SearchResponse(InternalSearchResponse.empty(), null, 1, 1, 1,
+				ShardSearchFailure.EMPTY_ARRAY);
+		ms.complete(new MultiSearchResponse(new MultiSearchResponse.Item[] {
+				new MultiSearchResponse.Item(null, new IllegalStateException("failed")),
+				new MultiSearchResponse.Item(ok, null) }));
+		assertTrue(first.isCompletedExceptionally());
+		try {
+			first.get();
+			fail("Expected failure.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(0, second.get().hits);
+		assertTrue(second.get().results.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testQueryOfAnotherClient() {
+		new MultiSearch(client, null).add(new SearchQuery<Tweet>(new SearchableClient(), mapping));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAddAfterExecute() {
+		MultiSearch ms = new MultiSearch(client, null);
+		ms.execute();
+		ms.add(query());
+	}
+}
@@ -0,0 +1,53 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ReindexerTest {
+
+	Reindexer reindexer = new Reindexer(null, null, "default", Collections.emptyList(), 500, 60000, 1000,
+			5 * 1024 * 1024);
+
+	@Test
+	public void testThrottle() {
+		reindexer.maxDocsPerSecond(100);
+		reindexer.startTime = System.currentTimeMillis();
+		reindexer.throttle(1);
+		reindexer.throttle(20);
+		assertTrue(System.currentTimeMillis() - reindexer.startTime >= 200);
+	}
+
+	@Test
+	public void testUnlimited() {
+		reindexer.startTime = System.currentTimeMillis();
+		reindexer.throttle(1000000);
+		assertTrue(System.currentTimeMillis() - reindexer.startTime < 100);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWorkers() {
+		reindexer.workers(0);
+	}
+
+	@Test
+	public void testCheckResult() {
+		assertNull(reindexer.checkResult(true, new ReindexProgress("default-v1", 100, 100, 0, 1000, true)));
+		assertEquals("2 documents failed.",
+				reindexer.checkResult(true, new ReindexProgress("default-v1", 100, 98, 2, 1000, true)));
+		// bulk requests still in flight:
+		assertEquals("40 of 100 documents are not completed.",
+				reindexer.checkResult(false, new ReindexProgress("default-v1", 100, 60, 0, 1000, true)));
+		assertEquals("Bulk requests are not completed.",
+				reindexer.checkResult(false, new ReindexProgress("default-v1", 100, 100, 0, 1000, true)));
+	}
+
+	@Test
+	public void testProgress() {
+		ReindexProgress progress = new ReindexProgress("default-v1", 2000, 1500, 0, 3000, false);
+		assertEquals(500.0, progress.docsPerSecond, 0.0);
+		assertEquals(0.0, new ReindexProgress("default-v1", 0, 0, 0, 0, false).docsPerSecond, 0.0);
+	}
+}
@@ -0,0 +1,110 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.Test;
+
+import com.itranswarp.search.MetricsListener.Operation;
+
+public class RequestRecorderTest {
+
+	SearchableClient client = new SearchableClient();
+	RequestRecorder recorder = client.recorder;
+	Mapping mapping = new Mapping(Tweet.class);
+
+	@Test
+	public void testRecord() {
+		long[] times = new long[3];
+		recorder.setMetricsListener(new MetricsListener() {
+			@Override
+			public void onRequest(Operation operation, String type, long networkNanos, long tookNanos,
+					long hydrateNanos) {
+				assertEquals(Operation.GET, operation);
+				assertEquals("tweet", type);
+				times[0] = networkNanos;
+				times[1] = tookNanos;
+				times[2] = hydrateNanos;
+			}
+		});
+		recorder.record(Operation.GET, mapping, null, 100, 350, 400);
+		assertArrayEquals(new long[] { 250, 0, 50 }, times);
+	}
+
+	@Test
+	public void testRecordListenerFailed() {
+		AtomicInteger calls = new AtomicInteger();
+		recorder.setMetricsListener(new MetricsListener() {
+			@Override
+			public void onRequest(Operation operation, String type, long networkNanos, long tookNanos,
+					long hydrateNanos) {
+				calls.incrementAndGet();
+				throw new IllegalStateException("listener failed");
+			}
+
+			@Override
+			public void onError(Operation operation, String type, Throwable cause) {
+				calls.incrementAndGet();
+				throw new IllegalStateException("listener failed");
+			}
+
+			@Override
+			public void onBulk(int actions, int failed, int inFlightRequests) {
+				calls.incrementAndGet();
+				throw new IllegalStateException("listener failed");
+			}
+		});
+		recorder.record(Operation.GET, mapping, null, 100, 350, 400);
+		recorder.onError(Operation.SEARCH, mapping, new RuntimeException("search failed"));
+		recorder.onBulk(1000, 0, 1);
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	public void testSlowQuery() {
+		List<SlowQuery> slowQueries = new ArrayList<>();
+		recorder.setSlowQueryThreshold(100);
+		recorder.setSlowQueryHandler(slowQueries::add);
+		SearchRequest request = new SearchRequest().source(
+				new SearchSourceBuilder().query(client.createQueryBuilder(mapping, SplitUtil.split("trump"), false)));
+		SearchResponse sr = new SearchResponse(InternalSearchResponse.empty(), null, 5, 4, 12,
+				new ShardSearchFailure[0]);
+		recorder.checkSlowQuery(Operation.SEARCH, mapping, "trump", request, sr, TimeUnit.MILLISECONDS.toNanos(99));
+		recorder.checkSlowQuery(Operation.GET, mapping, "trump", request, sr, TimeUnit.MILLISECONDS.toNanos(150));
+		assertTrue(slowQueries.isEmpty());
+		recorder.checkSlowQuery(Operation.SEARCH, mapping, "trump", request, sr, TimeUnit.MILLISECONDS.toNanos(150));
+		assertEquals(1, slowQueries.size());
+		SlowQuery slowQuery = slowQueries.get(0);
+		assertEquals("tweet", slowQuery.type);
+		assertEquals("trump", slowQuery.words);
+		assertTrue(slowQuery.query.contains("\"multi_match\""));
+		assertEquals(12, slowQuery.took);
+		assertEquals(150, slowQuery.elapsed);
+		assertEquals(5, slowQuery.totalShards);
+		assertEquals(4, slowQuery.successfulShards);
+		assertNull(slowQuery.profile);
+	}
+
+	@Test
+	public void testSlowQueryHandlerError() {
+		recorder.setSlowQueryThreshold(0);
+		recorder.setSlowQueryHandler((slowQuery) -> {
+			throw new IllegalStateException("handler failed");
+		});
+		SearchRequest request = new SearchRequest().source(
+				new SearchSourceBuilder().query(client.createQueryBuilder(mapping, SplitUtil.split("trump"), false)));
+		SearchResponse sr = new SearchResponse(InternalSearchResponse.empty(), null, 5, 5, 12,
+				new ShardSearchFailure[0]);
+		// error of handler is logged but not thrown:
+		recorder.checkSlowQuery(Operation.SEARCH, mapping, "trump", request, sr, TimeUnit.MILLISECONDS.toNanos(10));
+	}
+}
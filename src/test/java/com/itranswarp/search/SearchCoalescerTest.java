@@ -0,0 +1,81 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class SearchCoalescerTest {
+
+	SearchCoalescer searches = new SearchCoalescer();
+
+	@Test
+	public void testCoalesce() throws Exception {
+		SearchCacheKey key = new SearchCacheKey(Tweet.class, SplitUtil.split("trump"), false, 0.5f, 100,
+				SearchableClient.EMPTY_FIELDS);
+		AtomicInteger calls = new AtomicInteger();
+		CompletableFuture<SearchResults<Tweet>> response = new CompletableFuture<>();
+		Supplier<CompletableFuture<SearchResults<Tweet>>> search = () -> {
+			calls.incrementAndGet();
+			return response;
+		};
+		CompletableFuture<SearchResults<Tweet>> first = searches.coalesce(key, search);
+		CompletableFuture<SearchResults<Tweet>> second = searches.coalesce(key, search);
+		assertEquals(1, calls.get());
+		assertEquals(1, searches.getCoalescedSearches());
+		second.cancel(false);
+		assertFalse(first.isDone());
+		SearchResults<Tweet> results = new SearchResults<>(0, Collections.emptyList());
+		response.complete(results);
+		assertSame(results, first.get());
+		// not in flight any more:
+		searches.coalesce(key, search);
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void testShareResults() {
+		SearchCacheKey key = new SearchCacheKey(Tweet.class, SplitUtil.split("trump"), false, 0.5f, 100,
+				SearchableClient.EMPTY_FIELDS);
+		Map<String, Facet> facets = Collections.singletonMap("via",
+				new Facet("via", Collections.emptyList(), 0));
+		Map<String, FieldStats> stats = Collections.singletonMap("createdAt",
+				new FieldStats("createdAt", 1, 100, 100, 100, 100));
+		Object[] cursor = new Object[] { 100L };
+		SearchResults<Tweet> results = new SearchResults<>(1, new ArrayList<>(Collections.singletonList(new Tweet())),
+				cursor, facets, stats);
+		SearchResults<Tweet> shared = searches.shareResults(key, -1, results);
+		assertEquals(1, shared.hits);
+		assertEquals(results.results, shared.results);
+		assertSame(cursor, shared.cursor);
+		assertSame(facets, shared.facets);
+		assertSame(stats, shared.stats);
+		try {
+			shared.results.clear();
+			fail("Results should be unmodifiable.");
+		} catch (UnsupportedOperationException e) {
+			// ok
+		}
+	}
+
+	@Test
+	public void testCoalesceFailure() throws Exception {
+		SearchCacheKey key = new SearchCacheKey(Tweet.class, SplitUtil.split("trump"), false, 0.5f, 100,
+				SearchableClient.EMPTY_FIELDS);
+		CompletableFuture<SearchResults<Tweet>> failed = searches.coalesce(key, () -> {
+			throw new IllegalStateException("failed");
+		});
+		try {
+			SearchableClient.await(failed);
+			fail("Expected failure.");
+		} catch (IllegalStateException e) {
+			assertEquals("failed", e.getMessage());
+		}
+	}
+}
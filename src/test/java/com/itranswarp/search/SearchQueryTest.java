@@ -0,0 +1,110 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SearchQueryTest {
+
+	SearchQuery<Tweet> query() {
+		return new SearchQuery<>(new SearchableClient(), new Mapping(Tweet.class));
+	}
+
+	@Test
+	public void testMatchAll() {
+		Map<String, Object> q = SearchableClientTest.toMap(query().createQueryBuilder());
+		assertTrue(q.containsKey("match_all"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testTextWithFilters() {
+		SearchQuery<Tweet> query = query().text("trump").filter("via", "iPhone 7 Plus").filterIn("style", 1, 2)
+				.range("createdAt", 100L, null);
+		Map<String, Object> bool = SearchableClientTest.get(SearchableClientTest.toMap(query.createQueryBuilder()),
+				"bool");
+		List<Object> must = (List<Object>) bool.get("must");
+		assertEquals(1, must.size());
+		List<Map<String, Object>> filters = (List<Map<String, Object>>) bool.get("filter");
+		assertEquals(3, filters.size());
+		assertTrue(filters.get(0).containsKey("term"));
+		assertTrue(filters.get(1).containsKey("terms"));
+		assertTrue(filters.get(2).containsKey("range"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFilterOnTextField() {
+		query().filter("content", "hello");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFilterOnUnknownField() {
+		query().filter("userId", "123");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFilterWithWrongValueType() {
+		query().filter("style", "1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRangeOnBooleanField() {
+		query().range("gender", false, true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSortByTextField() {
+		query().sortBy("name");
+	}
+
+	@Test
+	public void testSortBy() {
+		SearchQuery<Tweet> query = query().sortByDesc("createdAt").sortBy("via");
+		assertEquals(2, query.sorts.size());
+	}
+
+	@Test
+	public void testFacets() {
+		SearchQuery<Tweet> query = query().facet("via", 10).facet("gender", 2).histogram("createdAt", 1000)
+				.stats("createdAt");
+		assertEquals(4, query.aggregations.size());
+		assertTrue(query.aggregations.containsKey(SearchQuery.FACET_PREFIX + "createdAt"));
+		assertTrue(query.aggregations.containsKey(SearchQuery.STATS_PREFIX + "createdAt"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFacetOnTextField() {
+		query().facet("content", 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHistogramOnKeywordField() {
+		query().histogram("via", 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateFacet() {
+		query().facet("createdAt", 10).histogram("createdAt", 1000);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRouting() {
+		SearchQuery<MappingTest.Order> query = new SearchQuery<>(new SearchableClient(),
+				new Mapping(MappingTest.Order.class));
+		query.text("invoice").routing("t-1");
+		assertEquals("t-1", query.routing);
+		Map<String, Object> bool = SearchableClientTest.get(SearchableClientTest.toMap(query.createQueryBuilder()),
+				"bool");
+		List<Map<String, Object>> filters = (List<Map<String, Object>>) bool.get("filter");
+		assertTrue(filters.get(0).containsKey("term"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRoutingWithoutRoutingField() {
+		query().routing("t-1");
+	}
+}
@@ -6,7 +6,17 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
+import org.HdrHistogram.Histogram;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -94,6 +104,294 @@ public class SearchTest {
 		SearchResults<Tweet> sr5 = client.search(Tweet.class, "普京和特朗普", 3.0f);
 		sr5.results.stream().forEach(System.out::println);
 		assertEquals(2, sr5.results.size());
+		assertEquals(2, sr5.hits);
+		System.out.println("====================");
+		SearchResults<Tweet> sr6 = client.searchRelative(Tweet.class, "普京和特朗普", false, 1.0f);
+		sr6.results.stream().forEach(System.out::println);
+		assertEquals(sr6.hits, sr6.results.size());
+		assertTrue(sr6.hits >= 1 && sr6.hits < sr4.hits);
+	}
+
+	@Test
+	public void testBulkIndex() throws Exception {
+		List<String> failures = Collections.synchronizedList(new ArrayList<>());
+		try (BulkIndexer indexer = client.createBulkIndexer((type, id, cause) -> {
+			failures.add(id);
+		})) {
+			for (int i = 0; i < 2500; i++) {
+				indexer.index(new Tweet("bulk-" + i, "Bulk User", Tweet.STYLE_A, true, "iPhone 7 Plus",
+						"Bulk indexed tweet #" + i, System.currentTimeMillis()));
+			}
+			indexer.unindex(Tweet.class, "bulk-0");
+		}
+		assertTrue(failures.isEmpty());
+		Thread.sleep(5000);
+		assertNull(client.get(Tweet.class, "bulk-0"));
+		Tweet t = client.get(Tweet.class, "bulk-2499");
+		assertNotNull(t);
+		assertEquals("Bulk indexed tweet #2499", t.content);
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		Tweet t1 = new Tweet("async-1", "Async User", Tweet.STYLE_A, true, "iPhone 7 Plus", "Async indexed tweet",
+				System.currentTimeMillis());
+		client.indexAsync(t1).get();
+		Thread.sleep(5000);
+		CompletableFuture<Tweet> f1 = client.getAsync(Tweet.class, "async-1");
+		CompletableFuture<SearchResults<Tweet>> f2 = client.searchAsync(Tweet.class, "async");
+		Tweet t2 = f1.get();
+		assertNotNull(t2);
+		assertEquals("Async indexed tweet", t2.content);
+		assertEquals(1, f2.get().hits);
+		client.unindexAsync(t1).get();
+		assertNull(client.getAsync(Tweet.class, "async-1").get());
+	}
+
+	@Test
+	public void testGetAll() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			client.index(new Tweet("mget-" + i, "Multi Get", Tweet.STYLE_A, true, "iPhone 7 Plus", "Tweet #" + i,
+					System.currentTimeMillis()));
+		}
+		Thread.sleep(5000);
+		client.setMultiGetBatchSize(2);
+		List<Tweet> tweets = client.getAll(Tweet.class,
+				Arrays.asList("mget-4", "mget-not-exist", "mget-0", "mget-2", "mget-1", "mget-3"));
+		assertEquals(6, tweets.size());
+		assertEquals("mget-4", tweets.get(0).id);
+		assertNull(tweets.get(1));
+		assertEquals("mget-0", tweets.get(2).id);
+		assertEquals("Tweet #2", tweets.get(3).content);
+		assertEquals("mget-1", tweets.get(4).id);
+		assertEquals("mget-3", tweets.get(5).id);
+	}
+
+	@Test
+	public void testProjection() throws Exception {
+		client.index(new Tweet("proj-1", "Projection User", Tweet.STYLE_B, true, "iPad mini", "Projected tweet",
+				System.currentTimeMillis()));
+		Thread.sleep(5000);
+		Tweet t1 = client.get(Tweet.class, "proj-1", "name");
+		assertEquals("proj-1", t1.id);
+		assertEquals("Projection User", t1.name);
+		assertNull(t1.content);
+		assertEquals(0, t1.style);
+		SearchResults<Tweet> sr = client.search(Tweet.class, "projected", false, 0.0f, "content", "style");
+		assertEquals(1, sr.hits);
+		Tweet t2 = sr.results.get(0);
+		assertNull(t2.name);
+		assertEquals("Projected tweet", t2.content);
+		assertEquals(Tweet.STYLE_B, t2.style);
+	}
+
+	@Test
+	public void testPagingAndScroll() throws Exception {
+		for (int i = 0; i < 25; i++) {
+			client.index(new Tweet("page-" + i, "Paging User", Tweet.STYLE_A, true, "iPhone 7 Plus", "Paged tweet #" + i,
+					System.currentTimeMillis()));
+		}
+		Thread.sleep(5000);
+		Set<String> ids = new HashSet<>();
+		SearchResults<Tweet> sr = client.search(Tweet.class, "paged", false, 0.0f, 0, 10);
+		assertEquals(25, sr.hits);
+		assertEquals(10, sr.results.size());
+		sr.results.forEach((t) -> ids.add(t.id));
+		while (sr.cursor != null) {
+			sr = client.searchAfter(Tweet.class, "paged", false, 0.0f, sr.cursor, 10);
+			sr.results.forEach((t) -> ids.add(t.id));
+		}
+		assertEquals(25, ids.size());
+		// scroll:
+		client.setScrollSize(7);
+		AtomicInteger scrolls = new AtomicInteger();
+		client.setMetricsListener(new MetricsListener() {
+			@Override
+			public void onRequest(Operation operation, String type, long networkNanos, long tookNanos,
+					long hydrateNanos) {
+				if (operation == Operation.SCROLL) {
+					scrolls.incrementAndGet();
+				}
+			}
+		});
+		try (Stream<Tweet> stream = client.stream(Tweet.class, "paged", false, 0.0f, "content")) {
+			assertEquals(25, stream.filter((t) -> t.content.startsWith("Paged tweet")).count());
+		} finally {
+			client.setMetricsListener(null);
+		}
+		// first page, 3 more pages and an empty page:
+		assertEquals(5, scrolls.get());
+		try (ScrollIterator<Tweet> it = client.scroll(Tweet.class, "paged", false, 0.0f)) {
+			assertEquals(25, it.getTotalHits());
+			assertTrue(it.hasNext());
+			assertNotNull(it.next());
+		}
+	}
+
+	@Test
+	public void testTypedQuery() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			client.index(new Tweet("query-" + i, "Query User", i % 2 == 0 ? Tweet.STYLE_A : Tweet.STYLE_B, true,
+					i % 2 == 0 ? "iPhone 7 Plus" : "iPad mini", "Typed query tweet", 1000L + i));
+		}
+		Thread.sleep(5000);
+		SearchResults<Tweet> sr = client.query(Tweet.class).text("typed").filter("via", "iPad mini")
+				.range("createdAt", 1003L, null).sortByDesc("createdAt").search();
+		assertEquals(3, sr.hits);
+		assertEquals("query-9", sr.results.get(0).id);
+		assertEquals("query-5", sr.results.get(2).id);
+		assertNotNull(sr.cursor);
+		SearchResults<Tweet> next = client.query(Tweet.class).filter("style", Tweet.STYLE_A)
+				.range("createdAt", 1000L, 1009L).sortBy("createdAt").size(3).search();
+		assertEquals(5, next.hits);
+		assertEquals(3, next.results.size());
+		next = client.query(Tweet.class).filter("style", Tweet.STYLE_A).range("createdAt", 1000L, 1009L)
+				.sortBy("createdAt").size(3).searchAfter(next.cursor).search();
+		assertEquals(2, next.results.size());
+		assertEquals("query-6", next.results.get(0).id);
+	}
+
+	@Test
+	public void testCoalesceSearches() throws Exception {
+		client.setCoalesceSearches(true);
+		try {
+			List<CompletableFuture<SearchResults<Tweet>>> futures = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				futures.add(client.searchAsync(Tweet.class, "trump coalesce", false, 0.5f));
+			}
+			long hits = client.search(Tweet.class, "trump coalesce", 0.5f).hits;
+			for (CompletableFuture<SearchResults<Tweet>> future : futures) {
+				assertEquals(hits, future.get().hits);
+			}
+			assertTrue(client.getCoalescedSearches() > 0);
+		} finally {
+			client.setCoalesceSearches(false);
+		}
+	}
+
+	@Test
+	public void testMultiSearch() throws Exception {
+		MultiSearch ms = client.multiSearch();
+		CompletableFuture<SearchResults<Tweet>> trump = ms.add(Tweet.class, "trump");
+		CompletableFuture<SearchResults<Tweet>> bad = ms.add(client.query(Tweet.class).text("trump").sortBy("via")
+				.searchAfter(new Object[] { "x" }));
+		CompletableFuture<SearchResults<Tweet>> typed = ms.add(client.query(Tweet.class).filter("style", Tweet.STYLE_B));
+		ms.execute();
+		assertEquals(client.search(Tweet.class, "trump").hits, trump.get().hits);
+		assertTrue(bad.isCompletedExceptionally());
+		assertFalse(typed.isCompletedExceptionally());
+	}
+
+	@Test
+	public void testFacets() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			client.index(new Tweet("facet-" + i, "Facet User", i < 7 ? Tweet.STYLE_A : Tweet.STYLE_B, true,
+					i < 7 ? "iPhone 7 Plus" : "iPad mini", "Faceted tweet", 2000L + i));
+		}
+		Thread.sleep(5000);
+		SearchResults<Tweet> sr = client.query(Tweet.class).range("createdAt", 2000L, 2009L).facet("via", 10)
+				.facet("gender", 2).histogram("createdAt", 5).stats("createdAt").size(0).search();
+		assertEquals(10, sr.hits);
+		assertTrue(sr.results.isEmpty());
+		Facet via = sr.facets.get("via");
+		assertEquals(2, via.buckets.size());
+		assertEquals("iPhone 7 Plus", via.buckets.get(0).key);
+		assertEquals(7, via.buckets.get(0).count);
+		assertEquals(Boolean.TRUE, sr.facets.get("gender").buckets.get(0).key);
+		Facet createdAt = sr.facets.get("createdAt");
+		assertEquals(2, createdAt.buckets.size());
+		assertEquals(Long.valueOf(2000L), createdAt.buckets.get(0).key);
+		assertEquals(5, createdAt.buckets.get(0).count);
+		FieldStats stats = sr.stats.get("createdAt");
+		assertEquals(10, stats.count);
+		assertEquals(2000.0, stats.min, 0.0);
+		assertEquals(2009.0, stats.max, 0.0);
+	}
+
+	@Test
+	public void testRollingIndex() throws Exception {
+		long now = System.currentTimeMillis();
+		assertFalse(client.rollover(Event.class));
+		client.index(new Event("event-1", "Rolling index created", now));
+		// get is realtime:
+		Event e = client.get(Event.class, "event-1");
+		assertNotNull(e);
+		assertEquals("Rolling index created", e.message);
+		Thread.sleep(5000);
+		SearchResults<Event> sr1 = client.query(Event.class).text("rolling").between(now - 86400000L, now).search();
+		assertEquals(1, sr1.hits);
+		// no index of previous year:
+		SearchResults<Event> sr2 = client.query(Event.class).text("rolling")
+				.between(now - 400 * 86400000L, now - 366 * 86400000L).search();
+		assertEquals(0, sr2.hits);
+		client.unindex(Event.class, "event-1");
+		assertNull(client.get(Event.class, "event-1"));
+		// unindex right after index:
+		client.index(new Event("event-2", "Unindexed before refresh", now));
+		client.unindex(Event.class, "event-2");
+		assertNull(client.get(Event.class, "event-2"));
+	}
+
+	@Test
+	public void testReindex() throws Exception {
+		client.index(new Tweet("reindex-1", "Reindex User", Tweet.STYLE_A, true, "iPhone 7 Plus",
+				"Tweet copied by reindex", System.currentTimeMillis()));
+		Thread.sleep(5000);
+		List<ReindexProgress> reports = Collections.synchronizedList(new ArrayList<>());
+		ReindexProgress progress = client.createReindexer(Tweet.class).workers(2).maxDocsPerSecond(10000)
+				.progress(1000, reports::add).run();
+		assertTrue(progress.done);
+		assertEquals(0, progress.failed);
+		assertEquals(progress.sent, progress.succeeded);
+		assertFalse(reports.isEmpty());
+		Tweet t = client.get(Tweet.class, "reindex-1");
+		assertNotNull(t);
+		assertEquals("Tweet copied by reindex", t.content);
+		assertEquals(1, client.search(Tweet.class, "reindex").hits);
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		HistogramMetrics metrics = new HistogramMetrics();
+		client.setMetricsListener(metrics);
+		try {
+			client.search(Tweet.class, "特朗普");
+			client.searchAsync(Tweet.class, "微软").get();
+			client.get(Tweet.class, "bulk-1");
+		} finally {
+			client.setMetricsListener(null);
+		}
+		Histogram search = metrics.getHistogram(MetricsListener.Operation.SEARCH, "tweet",
+				HistogramMetrics.Phase.TOTAL);
+		assertEquals(2, search.getTotalCount());
+		assertNotNull(metrics.getHistogram(MetricsListener.Operation.GET, "tweet", HistogramMetrics.Phase.NETWORK));
+		assertTrue(metrics.getTotalHits("tweet") >= metrics.getTransferredHits("tweet"));
+		System.out.println(metrics.report());
+	}
+
+	@Test
+	public void testSlowQuery() throws Exception {
+		List<SlowQuery> slowQueries = Collections.synchronizedList(new ArrayList<>());
+		client.setSlowQueryThreshold(0);
+		client.setProfileSearches(true);
+		client.setSlowQueryHandler(slowQueries::add);
+		try {
+			client.search(Tweet.class, "特朗普");
+			client.searchAsync(Tweet.class, "微软").get();
+			client.get(Tweet.class, "bulk-1");
+		} finally {
+			client.setSlowQueryThreshold(-1);
+			client.setProfileSearches(false);
+			client.setSlowQueryHandler(null);
+		}
+		assertEquals(2, slowQueries.size());
+		SlowQuery slowQuery = slowQueries.get(0);
+		assertEquals("tweet", slowQuery.type);
+		assertEquals("特朗普", slowQuery.words);
+		assertTrue(slowQuery.query.contains("特朗普"));
+		assertTrue(slowQuery.totalShards > 0);
+		assertTrue(slowQuery.profile.contains("\"shards\""));
+		System.out.println(slowQuery);
 	}
 
 	static Process process = null;
@@ -119,6 +417,7 @@ public class SearchTest {
 		client.init();
 		client.createIndex();
 		client.createMapping(Tweet.class);
+		client.createMapping(Event.class);
 		// continue do output:
 		new Thread() {
 			public void run() {
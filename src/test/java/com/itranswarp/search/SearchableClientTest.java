@@ -0,0 +1,188 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.internal.InternalSearchHit;
+import org.elasticsearch.search.internal.InternalSearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.search.suggest.Suggest;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
+import org.junit.Test;
+
+public class SearchableClientTest {
+
+	SearchableClient client = new SearchableClient();
+	Mapping mapping = new Mapping(Tweet.class);
+
+	@Test
+	public void testWordQuery() {
+		Map<String, Object> query = toMap(client.createQueryBuilder(mapping, new Word("trump")));
+		Map<String, Object> multiMatch = get(query, "multi_match");
+		assertEquals("trump", multiMatch.get("query"));
+		String fields = multiMatch.get("fields").toString();
+		assertTrue(fields.contains("name^5.0"));
+		assertTrue(fields.contains("content^1.0"));
+		assertTrue(fields.contains("via^1.0"));
+		assertFalse(fields.contains("_all"));
+	}
+
+	@Test
+	public void testPhraseQuery() {
+		Map<String, Object> query = toMap(client.createQueryBuilder(mapping, new Phrase("微软")));
+		Map<String, Object> multiMatch = get(query, "multi_match");
+		assertEquals("phrase", multiMatch.get("type"));
+		String fields = multiMatch.get("fields").toString();
+		assertTrue(fields.contains("name^5.0"));
+		assertFalse(fields.contains("via"));
+		Map<String, Object> longPhrase = get(toMap(client.createQueryBuilder(mapping, new Phrase("君不见黄河"))),
+				"multi_match");
+		assertEquals("75%", longPhrase.get("minimum_should_match"));
+	}
+
+	@Test
+	public void testCjkBigramQuery() {
+		Mapping article = new Mapping(MappingTest.ChineseArticle.class);
+		// phrase also queries standard text field:
+		String phraseFields = get(toMap(client.createQueryBuilder(article, new Phrase("微软"))), "multi_match")
+				.get("fields").toString();
+		assertTrue(phraseFields.contains("title^1.0"));
+		assertTrue(phraseFields.contains("content^1.0"));
+		assertFalse(phraseFields.contains("prefix"));
+		// single character queries unigram subfield of bigram field:
+		String charFields = get(toMap(client.createQueryBuilder(article, new Word("防"))), "multi_match")
+				.get("fields").toString();
+		assertTrue(charFields.contains("title.unigram^1.0"));
+		assertTrue(charFields.contains("content^1.0"));
+		assertFalse(charFields.contains("title^1.0"));
+		// english word queries bigram field:
+		String wordFields = get(toMap(client.createQueryBuilder(article, new Word("xbox"))), "multi_match")
+				.get("fields").toString();
+		assertTrue(wordFields.contains("title^1.0"));
+		assertFalse(wordFields.contains("title.unigram"));
+	}
+
+	@Test
+	public void testToSuggestions() {
+		CompletionSuggestion cs = new CompletionSuggestion(SearchableClient.SUGGESTION, 6);
+		CompletionSuggestion.Entry entry = new CompletionSuggestion.Entry(new Text("ip"), 0, 2);
+		String[][] options = { { "t-1", "iPhone 7" }, { "t-1", "iPhone 7 Plus" }, { "t-2", "iPad" },
+				{ "t-2", "iPad Pro" }, { "t-3", "iPod" }, { "t-4", "iPhone 6" } };
+		for (int i = 0; i < options.length; i++) {
+			CompletionSuggestion.Entry.Option option = new CompletionSuggestion.Entry.Option(i,
+					new Text(options[i][1]), 10 - i, Collections.emptyMap());
+			option.setHit(new InternalSearchHit(i, options[i][0], new Text("tweet"), Collections.emptyMap()));
+			entry.addOption(option);
+		}
+		cs.addTerm(entry);
+		SearchResponse sr = new SearchResponse(new InternalSearchResponse(InternalSearchHits.empty(),
+				InternalAggregations.EMPTY, new Suggest(Collections.singletonList(cs)), null, false, null), null, 1, 1,
+				1, new ShardSearchFailure[0]);
+		// documents matching by several inputs are returned once, up to n:
+		List<Suggestion> suggestions = client.toSuggestions(sr, 3);
+		assertEquals(3, suggestions.size());
+		assertEquals("t-1", suggestions.get(0).id);
+		assertEquals("iPhone 7", suggestions.get(0).text);
+		assertEquals("t-2", suggestions.get(1).id);
+		assertEquals("t-3", suggestions.get(2).id);
+		assertEquals(4, client.toSuggestions(sr, 10).size());
+	}
+
+	@Test
+	public void testRollingGet() {
+		Mapping events = new Mapping(Event.class);
+		// newest index first, event-1 is updated in a later period:
+		String[] indices = { "event-2016.11.02", "event-2016.11.01" };
+		MultiGetResponse response = new MultiGetResponse(new MultiGetItemResponse[] {
+				getItem(indices[0], "event-1", "{\"message\":\"updated\",\"createdAt\":2}"),
+				getItem(indices[1], "event-1", "{\"message\":\"created\",\"createdAt\":1}"),
+				getItem(indices[0], "event-2", null), getItem(indices[1], "event-2", null) });
+		List<Event> beans = client.toBeans(events, indices.length, response, null);
+		assertEquals(2, beans.size());
+		assertEquals("event-1", beans.get(0).id);
+		assertEquals("updated", beans.get(0).message);
+		assertNull(beans.get(1));
+		assertEquals(Arrays.asList(indices), client.toExistingIndices(events,
+				new MultiGetResponse(Arrays.copyOf(response.getResponses(), 2))));
+	}
+
+	static MultiGetItemResponse getItem(String index, String id, String source) {
+		return new MultiGetItemResponse(new GetResponse(new GetResult(index, "event", id, source == null ? -1 : 1,
+				source != null, source == null ? null : new BytesArray(source), null)), null);
+	}
+
+	@Test
+	public void testIndices() {
+		assertEquals("default", client.getWriteIndex(mapping));
+		assertEquals("default", client.getReadIndex(mapping));
+		Mapping rolling = new Mapping(Event.class);
+		assertEquals("event-write", client.getWriteIndex(rolling));
+		assertEquals("event", client.getReadIndex(rolling));
+	}
+
+	@Test
+	public void testRollingIndices() {
+		Mapping rolling = new Mapping(Event.class);
+		long from = Instant.parse("2016-10-30T08:00:00Z").toEpochMilli();
+		long to = Instant.parse("2016-11-02T00:00:00Z").toEpochMilli();
+		assertArrayEquals(new String[] { "event-2016.10.30", "event-2016.10.31", "event-2016.11.01", "event-2016.11.02" },
+				client.getReadIndices(rolling, from, to));
+		assertArrayEquals(new String[] { "event-2016.10.30" }, client.getReadIndices(rolling, from, from));
+		// too many indices:
+		assertArrayEquals(new String[] { "event" }, client.getReadIndices(rolling, 0, to));
+		assertArrayEquals(new String[] { "default" }, client.getReadIndices(mapping, from, to));
+	}
+
+	@Test
+	public void testMonthlyRollover() {
+		SearchableDocument.Rollover monthly = SearchableDocument.Rollover.MONTHLY;
+		long time = Instant.parse("2016-12-31T23:59:59Z").toEpochMilli();
+		assertEquals("log-2016.12", monthly.indexName("log", time));
+		long start = monthly.startOf(time);
+		assertEquals(Instant.parse("2016-12-01T00:00:00Z").toEpochMilli(), start);
+		assertEquals("log-2017.01", monthly.indexName("log", monthly.next(start)));
+	}
+
+	@Test
+	public void testCheckRouting() {
+		Mapping routed = new Mapping(MappingTest.Order.class);
+		client.checkRouting(routed, "t-1");
+		client.checkRouting(mapping, null);
+		try {
+			client.checkRouting(routed, null);
+			fail("Expected IllegalArgumentException.");
+		} catch (IllegalArgumentException e) {
+			// ok
+		}
+		try {
+			client.checkRouting(mapping, "t-1");
+			fail("Expected IllegalArgumentException.");
+		} catch (IllegalArgumentException e) {
+			// ok
+		}
+	}
+
+	static Map<String, Object> toMap(QueryBuilder qb) {
+		return JsonUtil.parseAsMap(qb.toString());
+	}
+
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> get(Map<String, Object> map, String key) {
+		return (Map<String, Object>) map.get(key);
+	}
+}
@@ -0,0 +1,141 @@
+package com.itranswarp.search;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchableDocumentProcessorTest {
+
+	File dir;
+	DiagnosticCollector<JavaFileObject> diagnostics;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("processor").toFile();
+		diagnostics = new DiagnosticCollector<>();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.walk(dir.toPath()).map((p) -> p.toFile()).sorted((a, b) -> b.getPath().length() - a.getPath().length())
+				.forEach(File::delete);
+	}
+
+	@Test
+	public void testWriteIndex() throws Exception {
+		assertTrue(compile("Book", "package demo;\n" //
+				+ "import com.itranswarp.search.*;\n" //
+				+ "@SearchableDocument public class Book {\n" //
+				+ "  @SearchableId public String id;\n" //
+				+ "  @SearchableField(boost = 2) public String title;\n" //
+				+ "  @SearchableField(keyword = true) public String isbn;\n" //
+				+ "  @SearchableField public long publishedAt;\n" //
+				+ "  @SearchableDocument public static class Chapter {\n" //
+				+ "    @SearchableId public String id;\n" //
+				+ "  }\n" //
+				+ "}\n"));
+		List<String> index = Files.readAllLines(
+				new File(dir, SearchableDocumentProcessor.INDEX_RESOURCE).toPath(), StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("demo.Book", "demo.Book$Chapter"), index);
+	}
+
+	@Test
+	public void testInvalidDocument() throws Exception {
+		assertFalse(compile("Book", "package demo;\n" //
+				+ "import com.itranswarp.search.*;\n" //
+				+ "@SearchableDocument public class Book {\n" //
+				+ "  public Book(String id) { this.id = 0; }\n" //
+				+ "  @SearchableId public int id;\n" //
+				+ "  @SearchableField(indexOptions = SearchableField.IndexOptions.OFFSETS) public long size;\n" //
+				+ "  @SearchableField public java.util.Date publishedAt;\n" //
+				+ "}\n", "-A" + SearchableDocumentProcessor.STRICT_OPTION + "=true"));
+		String errors = errors();
+		assertTrue(errors.contains("constructor without parameters"));
+		assertTrue(errors.contains("@SearchableId field can only be String."));
+		assertTrue(errors.contains("cannot set indexOptions"));
+		assertTrue(errors.contains("type is unsupported: java.util.Date"));
+		assertFalse(new File(dir, SearchableDocumentProcessor.INDEX_RESOURCE).exists());
+	}
+
+	@Test
+	public void testMissingId() throws Exception {
+		assertFalse(compile("Book", "package demo;\n" //
+				+ "import com.itranswarp.search.*;\n" //
+				+ "@SearchableDocument public class Book {\n" //
+				+ "  @SearchableField public String title;\n" //
+				+ "}\n", "-A" + SearchableDocumentProcessor.STRICT_OPTION + "=true"));
+		assertTrue(errors().contains("@SearchableId not found in class: demo.Book"));
+	}
+
+	@Test
+	public void testInvalidRouting() throws Exception {
+		assertFalse(compile("Order", "package demo;\n" //
+				+ "import com.itranswarp.search.*;\n" //
+				+ "@SearchableDocument public class Order {\n" //
+				+ "  @SearchableId public String id;\n" //
+				+ "  @SearchableRouting @SearchableField public String tenant;\n" //
+				+ "  @SearchableRouting public long shop;\n" //
+				+ "}\n", "-A" + SearchableDocumentProcessor.STRICT_OPTION + "=true"));
+		String errors = errors();
+		assertTrue(errors.contains("@SearchableRouting field tenant must be an indexed keyword String, int or long."));
+		assertTrue(errors.contains("@SearchableRouting field shop must also be a @SearchableField."));
+		assertTrue(errors.contains("Only one @SearchableRouting is allowed in class: demo.Order"));
+	}
+
+	@Test
+	public void testWarningIfNotStrict() throws Exception {
+		assertTrue(compile("Book", "package demo;\n" //
+				+ "import com.itranswarp.search.*;\n" //
+				+ "@SearchableDocument public class Book {\n" //
+				+ "  @SearchableField public String title;\n" //
+				+ "}\n"));
+		assertEquals("", errors());
+		assertTrue(messages(Diagnostic.Kind.WARNING).contains("@SearchableId not found in class: demo.Book"));
+		// listed so that it fails at runtime as if it were scanned:
+		List<String> index = Files.readAllLines(
+				new File(dir, SearchableDocumentProcessor.INDEX_RESOURCE).toPath(), StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("demo.Book"), index);
+	}
+
+	boolean compile(String name, String source, String... options) throws IOException {
+		File src = new File(dir, name + ".java");
+		Files.write(src.toPath(), source.getBytes(StandardCharsets.UTF_8));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (StandardJavaFileManager fm = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+			List<String> args = new ArrayList<>(Arrays.asList("-d", dir.getPath(), "-classpath",
+					System.getProperty("java.class.path"), "-proc:only"));
+			args.addAll(Arrays.asList(options));
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fm, diagnostics, args, null,
+					fm.getJavaFileObjects(src));
+			task.setProcessors(Arrays.asList(new SearchableDocumentProcessor()));
+			return task.call();
+		}
+	}
+
+	String errors() {
+		return messages(Diagnostic.Kind.ERROR);
+	}
+
+	String messages(Diagnostic.Kind kind) {
+		return diagnostics.getDiagnostics().stream().filter((d) -> d.getKind() == kind)
+				.map((d) -> d.getMessage(null)).collect(Collectors.joining("\n"));
+	}
+}
@@ -0,0 +1,118 @@
+package com.itranswarp.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compare table-driven SplitUtil with the previous StringBuilder based
+ * splitter over mixed Chinese and English queries.
+ * 
+ * Run by: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.itranswarp.search.SplitUtilBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitUtilBenchmark {
+
+	static final String[] QUERIES = { "trump", "微软", "trump特朗普", "普京和特朗普", "微软Microsoft发布了一 款XBox游戏机",
+			"李白：君不见黄河之水天上来", "Dive into the details of optimizing your cluster",
+			"帅呆了！微软即将发布 Visual Studio for Mac 预览版", "Google自己做手机，三星开始给自家系统拉应用", "H&M", "防 毒 软件",
+			"MIT开发新系统，让初学者也能处理复杂软件", "Obama: Give Trump a chance", "iPhone 7 Plus 价格" };
+
+	@Benchmark
+	public void splitToSpans(Blackhole bh) {
+		for (String q : QUERIES) {
+			bh.consume(SplitUtil.split(q));
+		}
+	}
+
+	@Benchmark
+	public void splitToSink(Blackhole bh) {
+		for (String q : QUERIES) {
+			SplitUtil.split(q, (text, start, end, phrase) -> {
+				bh.consume(end - start);
+			});
+		}
+	}
+
+	@Benchmark
+	public void legacySplit(Blackhole bh) {
+		for (String q : QUERIES) {
+			bh.consume(legacySplit(q));
+		}
+	}
+
+	// previous implementation for comparison:
+
+	static Span[] legacySplit(String text) {
+		text = text.trim();
+		if (text.isEmpty()) {
+			return SplitUtil.EMPTY_SPANS;
+		}
+		List<Span> list = new ArrayList<>();
+		StringBuilder buffer = new StringBuilder(10);
+		int lastType = SplitUtil.START;
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			int type = SplitUtil.getType(ch);
+			switch (type) {
+			case SplitUtil.ENGLISH:
+				if (lastType == SplitUtil.UNICODE) {
+					legacyAddAndClearBuffer(list, buffer, lastType);
+				}
+				buffer.append(ch);
+				break;
+			case SplitUtil.UNICODE:
+				if (lastType == SplitUtil.ENGLISH) {
+					legacyAddAndClearBuffer(list, buffer, lastType);
+				}
+				buffer.append(ch);
+				break;
+			case SplitUtil.SEPARATOR:
+				if (buffer.length() > 0) {
+					legacyAddAndClearBuffer(list, buffer, lastType);
+				}
+				break;
+			default:
+				throw new RuntimeException("Should not fall to default.");
+			}
+			lastType = type;
+		}
+		// add last term:
+		if (buffer.length() > 0) {
+			legacyAddAndClearBuffer(list, buffer, lastType);
+		}
+		return list.toArray(new Span[list.size()]);
+	}
+
+	static void legacyAddAndClearBuffer(List<Span> list, StringBuilder buffer, int lastType) {
+		String s = buffer.toString();
+		if (lastType == SplitUtil.UNICODE && s.length() > 7) {
+			s = s.substring(0, 7);
+		}
+		list.add(lastType == SplitUtil.ENGLISH || s.length() == 1 ? new Word(s) : new Phrase(s));
+		buffer.delete(0, buffer.length());
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(SplitUtilBenchmark.class.getSimpleName()).build()).run();
+	}
+}
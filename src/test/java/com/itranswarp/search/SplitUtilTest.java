@@ -37,4 +37,20 @@ public class SplitUtilTest {
 				new Word("XBox"), new Phrase("游戏机") }, SplitUtil.split("微软Microsoft发布了一 款XBox游戏机"));
 	}
 
+	@Test
+	public void testSplitSurrogatePairs() {
+		// 8 code points, truncated to 7 without splitting surrogate pair:
+		assertArrayEquals(new Span[] { new Phrase("𠀀𠀁𠀂𠀃𠀄𠀅𠀆") }, SplitUtil.split("𠀀𠀁𠀂𠀃𠀄𠀅𠀆𠀇"));
+		assertArrayEquals(new Span[] { new Word("𠀀"), new Word("abc") }, SplitUtil.split("𠀀abc"));
+	}
+
+	@Test
+	public void testSplitToSink() {
+		StringBuilder sb = new StringBuilder();
+		SplitUtil.split("微软Microsoft, 发布", (text, start, end, phrase) -> {
+			sb.append(phrase ? 'P' : 'W').append(start).append('-').append(end).append(' ');
+		});
+		assertEquals("P0-2 W2-11 P13-15 ", sb.toString());
+	}
+
 }